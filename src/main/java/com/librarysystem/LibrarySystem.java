@@ -1,9 +1,11 @@
 package com.librarysystem;
 
+import com.librarysystem.io.CatalogImporter;
 import com.librarysystem.model.Book;
 import com.librarysystem.model.Checkout;
 import com.librarysystem.model.Member;
 import com.librarysystem.service.LibraryService;
+import java.io.File;
 import java.util.List;
 import java.util.Scanner;
 
@@ -25,7 +27,8 @@ public class LibrarySystem {
     private void initializeSampleData() {
         // Only initialize if there's no existing data
         if (libraryService.getTotalBooks() > 0 || libraryService.getTotalMembers() > 0) {
-            System.out.println("Loaded existing library data.\n");
+            System.out.println("Loaded existing library data.");
+            System.out.println("Startup: " + libraryService.getLoadReport() + "\n");
             return;
         }
 
@@ -77,7 +80,8 @@ public class LibrarySystem {
             System.out.println("2. Search by title");
             System.out.println("3. Search by author");
             System.out.println("4. Add new book");
-            System.out.println("5. Back to main menu");
+            System.out.println("5. Import books from file");
+            System.out.println("6. Back to main menu");
             System.out.print("Select option: ");
 
             String choice = scanner.nextLine().trim();
@@ -87,7 +91,8 @@ public class LibrarySystem {
                 case "2" -> searchByTitle();
                 case "3" -> searchByAuthor();
                 case "4" -> addNewBook();
-                case "5" -> { return; }
+                case "5" -> importBooks();
+                case "6" -> { return; }
                 default -> System.out.println("Invalid option!");
             }
         }
@@ -214,6 +219,18 @@ public class LibrarySystem {
         }
     }
 
+    private void importBooks() {
+        System.out.print("Enter path of CSV or TSV file: ");
+        String path = scanner.nextLine().trim();
+
+        try {
+            CatalogImporter importer = new CatalogImporter(libraryService);
+            System.out.println(importer.importFile(new File(path)));
+        } catch (Exception e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+
     // ==================== MEMBER OPERATIONS ====================
 
     private void viewAllMembers() {
@@ -383,6 +400,7 @@ public class LibrarySystem {
                 case "4" -> libraryService.printStatistics();
                 case "5" -> {
                     System.out.println("Thank you for using Szeremeta Library System!");
+                    libraryService.close();
                     scanner.close();
                     return;
                 }
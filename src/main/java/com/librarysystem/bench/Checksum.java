@@ -0,0 +1,29 @@
+package com.librarysystem.bench;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Totals a value from every timed loop and prints it with the results, so the JIT cannot
+ * treat the loops' work as dead code and time an empty loop instead. Each loop adds what
+ * it read once it is done; threads may add at the same time.
+ */
+final class Checksum {
+    private static final LongAdder total = new LongAdder();
+
+    private Checksum() {
+    }
+
+    /**
+     * Add the values a timed loop read
+     */
+    static void add(long value) {
+        total.add(value);
+    }
+
+    /**
+     * Print the total, after a benchmark's results
+     */
+    static void print() {
+        System.out.printf("%nchecksum %d%n", total.sum());
+    }
+}
@@ -0,0 +1,186 @@
+package com.librarysystem.bench;
+
+import com.librarysystem.data.OpenHashMap;
+import com.librarysystem.data.StripedHashMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Measures how map throughput scales with the number of threads sharing one map, the way
+ * request threads would share the library's book catalog: mostly lookups by ISBN with
+ * some updates mixed in.
+ *
+ * {@link StripedHashMap} is compared with an {@link OpenHashMap} behind a single
+ * read-write lock, which is the simplest way to share the service's other maps, and with
+ * {@link ConcurrentHashMap} as a reference. Each cell is operations per microsecond over
+ * the whole run, summed across threads. Scaling is limited by the number of CPU cores.
+ *
+ * Usage: {@code java -cp out com.librarysystem.bench.ConcurrentMapBenchmark [keys] [seconds] [writes%] [max threads]}
+ */
+public class ConcurrentMapBenchmark {
+
+    /**
+     * The operations being timed, so each map can be driven by the same loop
+     */
+    private interface Target {
+        void put(String key, Integer value);
+
+        Integer get(String key);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int keyCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        double seconds = args.length > 1 ? Double.parseDouble(args[1]) : 1.0;
+        int writePercent = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int maxThreads = args.length > 3 ? Integer.parseInt(args[3])
+                : Math.max(4, Runtime.getRuntime().availableProcessors());
+
+        String[] keys = new String[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            keys[i] = String.format("978%010d", i);
+        }
+
+        System.out.printf("%,d keys, %d%% writes, %.1f s per run, %d CPU cores; operations per microsecond%n",
+                keyCount, writePercent, seconds, Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-26s", "threads");
+        List<Integer> threadCounts = new ArrayList<>();
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            threadCounts.add(threads);
+            System.out.printf(" %8d", threads);
+        }
+        System.out.println();
+
+        String[] names = {"StripedHashMap", "OpenHashMap + RW lock", "ConcurrentHashMap"};
+        for (int map = 0; map < names.length; map++) {
+            Target target = create(map, keys);
+            // Untimed run so the first column is not paying for JIT warm-up
+            run(target, keys, 1, seconds / 2, writePercent);
+            System.out.printf("%-26s", names[map]);
+            for (int threads : threadCounts) {
+                System.out.printf(" %8.1f", run(target, keys, threads, seconds, writePercent));
+            }
+            System.out.println();
+        }
+        Checksum.print();
+    }
+
+    /**
+     * Run the workload on {@code threads} threads for the given time
+     *
+     * @return operations per microsecond across all threads
+     */
+    private static double run(Target map, String[] keys, int threads, double seconds, int writePercent)
+            throws InterruptedException {
+        LongAdder operations = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        long durationNanos = (long) (seconds * 1_000_000_000L);
+        List<Thread> workers = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long deadline = System.nanoTime() + durationNanos;
+                long count = 0;
+                long sink = 0;
+                while ((count & 1023) != 0 || System.nanoTime() < deadline) {
+                    String key = keys[random.nextInt(keys.length)];
+                    if (random.nextInt(100) < writePercent) {
+                        map.put(key, (int) count);
+                    } else {
+                        sink += map.get(key);
+                    }
+                    count++;
+                }
+                operations.add(count);
+                Checksum.add(sink);
+            });
+            workers.add(worker);
+            worker.start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return operations.sum() / ((System.nanoTime() - begin) / 1000.0);
+    }
+
+    private static Target create(int map, String[] keys) {
+        Target target = switch (map) {
+            case 0 -> striped();
+            case 1 -> locked();
+            default -> reference();
+        };
+        for (int i = 0; i < keys.length; i++) {
+            target.put(keys[i], i);
+        }
+        return target;
+    }
+
+    private static Target striped() {
+        StripedHashMap<String, Integer> map = new StripedHashMap<>();
+        return new Target() {
+            @Override
+            public void put(String key, Integer value) {
+                map.put(key, value);
+            }
+
+            @Override
+            public Integer get(String key) {
+                return map.get(key);
+            }
+        };
+    }
+
+    private static Target locked() {
+        OpenHashMap<String, Integer> map = new OpenHashMap<>();
+        ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        return new Target() {
+            @Override
+            public void put(String key, Integer value) {
+                lock.writeLock().lock();
+                try {
+                    map.put(key, value);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+
+            @Override
+            public Integer get(String key) {
+                lock.readLock().lock();
+                try {
+                    return map.get(key);
+                } finally {
+                    lock.readLock().unlock();
+                }
+            }
+        };
+    }
+
+    private static Target reference() {
+        ConcurrentHashMap<String, Integer> map = new ConcurrentHashMap<>();
+        return new Target() {
+            @Override
+            public void put(String key, Integer value) {
+                map.put(key, value);
+            }
+
+            @Override
+            public Integer get(String key) {
+                return map.get(key);
+            }
+        };
+    }
+}
@@ -0,0 +1,243 @@
+package com.librarysystem.bench;
+
+import com.librarysystem.data.HashMap;
+import com.librarysystem.data.OpenHashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Compares the chaining {@link HashMap} with the open-addressing {@link OpenHashMap},
+ * with {@link java.util.HashMap} as a reference, on the operations the library service
+ * performs: inserting keys, looking up keys that are present and keys that are not,
+ * iterating and removing. A second table shows how long the slowest single put takes
+ * when the map has to grow, with resizes done all at once and incrementally.
+ *
+ * Keys are shaped like the service's real keys (ISBNs and checkout IDs) and are looked
+ * up in a shuffled order, so the table is walked the way a busy library walks it. Every
+ * map is exercised once before timing starts, and each timing is the best of several
+ * rounds.
+ *
+ * Usage: {@code java -cp out com.librarysystem.bench.HashMapBenchmark [keys] [rounds]}
+ */
+public class HashMapBenchmark {
+    private static final int WARM_UP_KEYS = 200_000;
+
+    /**
+     * The operations being timed, so each map can be driven by the same loop
+     */
+    private interface Target {
+        void put(String key, Integer value);
+
+        Integer get(String key);
+
+        Integer remove(String key);
+
+        void forEach(BiConsumer<String, Integer> action);
+    }
+
+    public static void main(String[] args) {
+        int keyCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        List<String> names = List.of("data.HashMap", "data.OpenHashMap", "java.util.HashMap");
+        List<Supplier<Target>> maps = List.of(
+                () -> chaining(false), () -> openAddressing(false), HashMapBenchmark::reference);
+
+        for (Supplier<Target> map : maps) {
+            run(map, keys("978%010d", WARM_UP_KEYS), 1);
+        }
+
+        for (String format : new String[] {"978%010d", "CO%06d"}) {
+            System.out.printf("%n%,d keys like %s; best of %d rounds, ns per operation%n",
+                    keyCount, String.format(format, 1), rounds);
+            System.out.printf("%-18s %8s %8s %8s %8s %8s%n", "map", "put", "get", "miss", "iterate", "remove");
+            String[] keys = keys(format, keyCount);
+            for (int i = 0; i < maps.size(); i++) {
+                double[] times = run(maps.get(i), keys, rounds);
+                System.out.printf("%-18s %8.1f %8.1f %8.1f %8.1f %8.1f%n",
+                        names.get(i), times[0], times[1], times[2], times[3], times[4]);
+            }
+        }
+
+        System.out.printf("%n%,d puts into an empty map; best of %d rounds%n", keyCount, rounds);
+        System.out.printf("%-18s %-12s %10s %12s %10s%n", "map", "resize", "total ms", "99.99% us", "max us");
+        String[] keys = keys("CO%06d", keyCount);
+        for (boolean incremental : new boolean[] {false, true}) {
+            String mode = incremental ? "incremental" : "all at once";
+            double[] times = putLatency(() -> chaining(incremental), keys, rounds);
+            System.out.printf("%-18s %-12s %10.1f %12.1f %10.1f%n", names.get(0), mode, times[0], times[1], times[2]);
+            times = putLatency(() -> openAddressing(incremental), keys, rounds);
+            System.out.printf("%-18s %-12s %10.1f %12.1f %10.1f%n", names.get(1), mode, times[0], times[1], times[2]);
+        }
+        Checksum.print();
+    }
+
+    /**
+     * Time every put into a growing map on its own, returning the best total milliseconds,
+     * 99.99th percentile microseconds and slowest put in microseconds
+     */
+    private static double[] putLatency(Supplier<Target> factory, String[] keys, int rounds) {
+        double[] best = {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE};
+        long[] nanos = new long[keys.length];
+        for (int round = 0; round < rounds; round++) {
+            System.gc();  // Keep a collection left over from the last round out of the timings
+            Target map = factory.get();
+            long total = System.nanoTime();
+            for (int i = 0; i < keys.length; i++) {
+                long start = System.nanoTime();
+                map.put(keys[i], i);
+                nanos[i] = System.nanoTime() - start;
+            }
+            best[0] = Math.min(best[0], (System.nanoTime() - total) / 1_000_000.0);
+            Arrays.sort(nanos);
+            best[1] = Math.min(best[1], nanos[(int) (nanos.length * 0.9999)] / 1000.0);
+            best[2] = Math.min(best[2], nanos[nanos.length - 1] / 1000.0);
+        }
+        return best;
+    }
+
+    /**
+     * Time each operation over all keys, returning the best nanoseconds per key for
+     * put, get, missing get, iterate and remove
+     */
+    private static double[] run(Supplier<Target> factory, String[] keys, int rounds) {
+        String[] misses = new String[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            misses[i] = keys[i] + "X";
+        }
+        String[] shuffled = keys.clone();
+        Collections.shuffle(Arrays.asList(shuffled), new Random(7));
+
+        double[] best = {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE};
+        long sink = 0;
+        for (int round = 0; round < rounds; round++) {
+            Target map = factory.get();
+
+            long start = System.nanoTime();
+            for (int i = 0; i < keys.length; i++) {
+                map.put(keys[i], i);
+            }
+            best[0] = Math.min(best[0], nanosPerKey(start, keys.length));
+
+            start = System.nanoTime();
+            for (String key : shuffled) {
+                sink += map.get(key);
+            }
+            best[1] = Math.min(best[1], nanosPerKey(start, keys.length));
+
+            start = System.nanoTime();
+            for (String key : misses) {
+                if (map.get(key) != null) {
+                    sink++;
+                }
+            }
+            best[2] = Math.min(best[2], nanosPerKey(start, keys.length));
+
+            long[] total = new long[1];
+            start = System.nanoTime();
+            map.forEach((key, value) -> total[0] += value);
+            best[3] = Math.min(best[3], nanosPerKey(start, keys.length));
+            sink += total[0];
+
+            start = System.nanoTime();
+            for (String key : shuffled) {
+                sink += map.remove(key);
+            }
+            best[4] = Math.min(best[4], nanosPerKey(start, keys.length));
+        }
+        Checksum.add(sink);
+        return best;
+    }
+
+    private static String[] keys(String format, int count) {
+        List<String> keys = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            keys.add(String.format(format, i));
+        }
+        return keys.toArray(new String[0]);
+    }
+
+    private static double nanosPerKey(long startNanos, int keys) {
+        return (double) (System.nanoTime() - startNanos) / keys;
+    }
+
+    private static Target chaining(boolean incrementalResize) {
+        HashMap<String, Integer> map = new HashMap<>(0, incrementalResize);
+        return new Target() {
+            @Override
+            public void put(String key, Integer value) {
+                map.put(key, value);
+            }
+
+            @Override
+            public Integer get(String key) {
+                return map.get(key);
+            }
+
+            @Override
+            public Integer remove(String key) {
+                return map.remove(key);
+            }
+
+            @Override
+            public void forEach(BiConsumer<String, Integer> action) {
+                map.forEach(action);
+            }
+        };
+    }
+
+    private static Target openAddressing(boolean incrementalResize) {
+        OpenHashMap<String, Integer> map = new OpenHashMap<>(0, incrementalResize);
+        return new Target() {
+            @Override
+            public void put(String key, Integer value) {
+                map.put(key, value);
+            }
+
+            @Override
+            public Integer get(String key) {
+                return map.get(key);
+            }
+
+            @Override
+            public Integer remove(String key) {
+                return map.remove(key);
+            }
+
+            @Override
+            public void forEach(BiConsumer<String, Integer> action) {
+                map.forEach(action);
+            }
+        };
+    }
+
+    private static Target reference() {
+        java.util.HashMap<String, Integer> map = new java.util.HashMap<>();
+        return new Target() {
+            @Override
+            public void put(String key, Integer value) {
+                map.put(key, value);
+            }
+
+            @Override
+            public Integer get(String key) {
+                return map.get(key);
+            }
+
+            @Override
+            public Integer remove(String key) {
+                return map.remove(key);
+            }
+
+            @Override
+            public void forEach(BiConsumer<String, Integer> action) {
+                map.forEach(action);
+            }
+        };
+    }
+}
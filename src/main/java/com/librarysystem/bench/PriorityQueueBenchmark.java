@@ -0,0 +1,195 @@
+package com.librarysystem.bench;
+
+import com.librarysystem.data.PriorityQueue;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Compares the shapes of {@link PriorityQueue} on the work a due-date queue of checkouts
+ * does: queueing every checkout, moving some after a renewal, removing some that were
+ * returned early and draining the rest in due order. The plain binary heap is the queue
+ * as it was before indexing and wider heaps were added; {@link java.util.PriorityQueue}
+ * is a reference.
+ *
+ * Without an index, moving or removing an element means searching the heap for it, so
+ * those columns show the difference between O(n) and O(log n). Each timing is the best
+ * of several rounds.
+ *
+ * Usage: {@code java -cp out com.librarysystem.bench.PriorityQueueBenchmark [elements] [updates] [rounds]}
+ */
+public class PriorityQueueBenchmark {
+    private static final int WARM_UP_ELEMENTS = 100_000;
+
+    /**
+     * The operations being timed, so each queue can be driven by the same loop
+     */
+    private interface Target {
+        void offer(Item item);
+
+        Item poll();
+
+        void update(Item item);
+
+        void remove(Item item);
+    }
+
+    /**
+     * A queued checkout: ordered by due day, identified by its ID
+     */
+    private static final class Item implements Comparable<Item> {
+        final int id;
+        int dueDay;
+
+        Item(int id, int dueDay) {
+            this.id = id;
+            this.dueDay = dueDay;
+        }
+
+        @Override
+        public int compareTo(Item other) {
+            return Integer.compare(dueDay, other.dueDay);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Item && ((Item) o).id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return id;
+        }
+    }
+
+    public static void main(String[] args) {
+        int elements = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int updates = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+        List<String> names = List.of("binary", "binary indexed", "4-ary indexed", "8-ary indexed",
+                "java.util.PriorityQueue");
+        List<Supplier<Target>> queues = List.of(
+                () -> heap(2, false), () -> heap(2, true), () -> heap(4, true), () -> heap(8, true),
+                PriorityQueueBenchmark::reference);
+
+        for (Supplier<Target> queue : queues) {
+            run(queue, WARM_UP_ELEMENTS, Math.min(updates, 1000), 1);
+        }
+
+        System.out.printf("%,d elements, %,d updates and removals; best of %d rounds, ns per operation%n",
+                elements, updates, rounds);
+        System.out.printf("%-24s %8s %10s %10s %8s%n", "queue", "offer", "update", "remove", "poll");
+        for (int i = 0; i < queues.size(); i++) {
+            double[] times = run(queues.get(i), elements, updates, rounds);
+            System.out.printf("%-24s %8.1f %10.1f %10.1f %8.1f%n",
+                    names.get(i), times[0], times[1], times[2], times[3]);
+        }
+        Checksum.print();
+    }
+
+    /**
+     * Time each operation, returning the best nanoseconds per operation for offer,
+     * update, remove and poll
+     */
+    private static double[] run(Supplier<Target> factory, int elements, int updates, int rounds) {
+        double[] best = {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE};
+        long sink = 0;
+        for (int round = 0; round < rounds; round++) {
+            Random random = new Random(7);
+            Item[] items = new Item[elements];
+            for (int i = 0; i < elements; i++) {
+                items[i] = new Item(i, random.nextInt(3650));
+            }
+            Target queue = factory.get();
+
+            long start = System.nanoTime();
+            for (Item item : items) {
+                queue.offer(item);
+            }
+            best[0] = Math.min(best[0], nanosPerOperation(start, elements));
+
+            start = System.nanoTime();
+            for (int i = 0; i < updates; i++) {
+                Item item = items[random.nextInt(elements)];
+                item.dueDay += 14;  // Renewed
+                queue.update(item);
+            }
+            best[1] = Math.min(best[1], nanosPerOperation(start, updates));
+
+            // Distinct items, so none is removed twice
+            int removals = Math.min(updates, elements);
+            int stride = Math.max(1, elements / removals);
+            start = System.nanoTime();
+            for (int i = 0; i < removals; i++) {
+                queue.remove(items[i * stride]);
+            }
+            best[2] = Math.min(best[2], nanosPerOperation(start, removals));
+
+            int remaining = elements - removals;
+            start = System.nanoTime();
+            for (int i = 0; i < remaining; i++) {
+                sink += queue.poll().dueDay;
+            }
+            best[3] = Math.min(best[3], nanosPerOperation(start, remaining));
+        }
+        Checksum.add(sink);
+        return best;
+    }
+
+    private static double nanosPerOperation(long startNanos, int operations) {
+        return operations == 0 ? 0 : (double) (System.nanoTime() - startNanos) / operations;
+    }
+
+    private static Target heap(int arity, boolean indexed) {
+        PriorityQueue<Item> queue = new PriorityQueue<>(arity, indexed);
+        return new Target() {
+            @Override
+            public void offer(Item item) {
+                queue.offer(item);
+            }
+
+            @Override
+            public Item poll() {
+                return queue.poll();
+            }
+
+            @Override
+            public void update(Item item) {
+                queue.update(item);
+            }
+
+            @Override
+            public void remove(Item item) {
+                queue.remove(item);
+            }
+        };
+    }
+
+    private static Target reference() {
+        java.util.PriorityQueue<Item> queue = new java.util.PriorityQueue<>();
+        return new Target() {
+            @Override
+            public void offer(Item item) {
+                queue.offer(item);
+            }
+
+            @Override
+            public Item poll() {
+                return queue.poll();
+            }
+
+            @Override
+            public void update(Item item) {
+                // No way to move an element, so take it out and put it back
+                queue.remove(item);
+                queue.offer(item);
+            }
+
+            @Override
+            public void remove(Item item) {
+                queue.remove(item);
+            }
+        };
+    }
+}
@@ -0,0 +1,135 @@
+package com.librarysystem.bench;
+
+import com.librarysystem.model.Book;
+import com.librarysystem.model.Checkout;
+import com.librarysystem.model.Member;
+import com.librarysystem.persistence.LibrarySnapshot;
+import com.librarysystem.persistence.MappedSnapshot;
+import com.librarysystem.persistence.PersistenceConfig.Compression;
+import com.librarysystem.persistence.SnapshotFormat;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Compares snapshot size against save and load time for each compression codec and level.
+ *
+ * A synthetic library is written once per setting into a temporary directory, then read
+ * back sequentially and with the parallel loader. Every codec is exercised once before
+ * timing starts, and each timing is the best of several rounds, so JIT warm-up and page
+ * cache effects are kept out of the numbers.
+ *
+ * Usage: {@code java -cp out com.librarysystem.bench.SnapshotBenchmark [books] [rounds]}
+ */
+public class SnapshotBenchmark {
+    private static final String[] GENRES = {"Fiction", "History", "Science", "Biography", "Poetry",
+            "Mystery", "Fantasy", "Children", "Travel", "Cooking"};
+
+    public static void main(String[] args) throws IOException {
+        int bookCount = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        LibrarySnapshot snapshot = generate(bookCount, new Random(42));
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+        File directory = Files.createTempDirectory("snapshot-bench").toFile();
+        File file = new File(directory, "library_data.snapshot");
+        System.out.printf("%,d books, %,d members, %,d checkouts; best of %d rounds, %d threads%n%n",
+                snapshot.getBooks().size(), snapshot.getMembers().size(), snapshot.getCheckouts().size(),
+                rounds, pool.getParallelism());
+        System.out.printf("%-10s %5s %12s %7s %10s %10s %10s%n",
+                "codec", "level", "bytes", "ratio", "save ms", "read ms", "load ms");
+
+        long plainSize = 0;
+        try {
+            // One untimed pass over every codec so the first row is not paying for JIT warm-up
+            for (Compression compression : Compression.values()) {
+                SnapshotFormat.write(file, snapshot, false, compression, 1);
+                SnapshotFormat.read(file);
+                MappedSnapshot.open(file, pool).readAll(pool);
+            }
+
+            for (Compression compression : Compression.values()) {
+                int[] levels = compression == Compression.NONE ? new int[] {0} : new int[] {1, 6, 9};
+                for (int level : levels) {
+                    double save = Double.MAX_VALUE;
+                    double read = Double.MAX_VALUE;
+                    double load = Double.MAX_VALUE;
+                    for (int round = 0; round < rounds; round++) {
+                        long start = System.nanoTime();
+                        SnapshotFormat.write(file, snapshot, false, compression, level);
+                        save = Math.min(save, millisSince(start));
+
+                        start = System.nanoTime();
+                        SnapshotFormat.read(file);
+                        read = Math.min(read, millisSince(start));
+
+                        start = System.nanoTime();
+                        MappedSnapshot.open(file, pool).readAll(pool);
+                        load = Math.min(load, millisSince(start));
+                    }
+
+                    long size = file.length();
+                    if (compression == Compression.NONE) {
+                        plainSize = size;
+                    }
+                    System.out.printf("%-10s %5s %,12d %6.1fx %10.1f %10.1f %10.1f%n",
+                            compression.name().toLowerCase(), level == 0 ? "-" : String.valueOf(level),
+                            size, (double) plainSize / size, save, read, load);
+                }
+            }
+        } finally {
+            pool.shutdown();
+            Files.deleteIfExists(file.toPath());
+            Files.deleteIfExists(SnapshotFormat.previousFile(file).toPath());
+            Files.deleteIfExists(directory.toPath());
+        }
+    }
+
+    /**
+     * Build a library whose text repeats the way a real catalog does: a few hundred
+     * authors, a handful of genres and titles made of common words
+     */
+    private static LibrarySnapshot generate(int bookCount, Random random) {
+        String[] words = {"the", "of", "and", "history", "night", "river", "garden", "secret",
+                "city", "war", "love", "guide", "light", "house", "winter", "journey"};
+        List<Book> books = new ArrayList<>(bookCount);
+        for (int i = 0; i < bookCount; i++) {
+            String title = words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)]
+                    + " " + words[random.nextInt(words.length)] + " " + (i % 97);
+            books.add(new Book(String.format("978%010d", i), title, "Author " + random.nextInt(500),
+                    GENRES[random.nextInt(GENRES.length)], 1 + random.nextInt(5)));
+        }
+
+        int memberCount = Math.max(1, bookCount / 10);
+        List<Member> members = new ArrayList<>(memberCount);
+        for (int i = 0; i < memberCount; i++) {
+            String id = String.format("M%07d", i);
+            members.add(new Member(id, "Member " + i, "member" + i + "@example.org",
+                    String.format("555-%04d", random.nextInt(10_000))));
+        }
+
+        int checkoutCount = bookCount / 2;
+        List<Checkout> checkouts = new ArrayList<>(checkoutCount);
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < checkoutCount; i++) {
+            Checkout checkout = new Checkout(String.format("CO%06d", i + 1),
+                    members.get(random.nextInt(memberCount)).getMemberId(),
+                    books.get(random.nextInt(bookCount)).getIsbn(),
+                    today.minusDays(random.nextInt(60)), 14);
+            if (random.nextBoolean()) {
+                checkout.returnBook(checkout.getCheckoutDate().plusDays(random.nextInt(20)));
+            }
+            checkouts.add(checkout);
+        }
+        return new LibrarySnapshot(books, members, checkouts, checkoutCount);
+    }
+
+    private static double millisSince(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000.0;
+    }
+}
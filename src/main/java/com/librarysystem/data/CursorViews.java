@@ -0,0 +1,117 @@
+package com.librarysystem.data;
+
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.function.IntSupplier;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Read-only live views over a map, built on its {@link MapCursor}. A view holds no
+ * entries of its own: each iterator scans the map as it is at that moment. Streams use
+ * the map's own spliterators, which split the table into ranges for parallel scans.
+ */
+final class CursorViews {
+
+    private CursorViews() {
+    }
+
+    /**
+     * View of a map's values
+     */
+    static <K, V> Collection<V> values(Supplier<MapCursor<K, V>> cursors, Supplier<Spliterator<V>> spliterators,
+                                       IntSupplier size) {
+        return new AbstractCollection<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                return new CursorIterator<K, V, V>(cursors.get()) {
+                    @Override
+                    V current(MapCursor<K, V> cursor) {
+                        return cursor.value();
+                    }
+                };
+            }
+
+            @Override
+            public Spliterator<V> spliterator() {
+                return spliterators.get();
+            }
+
+            @Override
+            public int size() {
+                return size.getAsInt();
+            }
+        };
+    }
+
+    /**
+     * View of a map's keys. {@code contains} is a hash lookup, not a scan.
+     */
+    static <K, V> Set<K> keys(Supplier<MapCursor<K, V>> cursors, Supplier<Spliterator<K>> spliterators,
+                              IntSupplier size, Predicate<Object> containsKey) {
+        return new AbstractSet<K>() {
+            @Override
+            public Iterator<K> iterator() {
+                return new CursorIterator<K, V, K>(cursors.get()) {
+                    @Override
+                    K current(MapCursor<K, V> cursor) {
+                        return cursor.key();
+                    }
+                };
+            }
+
+            @Override
+            public Spliterator<K> spliterator() {
+                return spliterators.get();
+            }
+
+            @Override
+            public int size() {
+                return size.getAsInt();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return containsKey.test(o);
+            }
+        };
+    }
+
+    /**
+     * Turns a cursor into an iterator by looking one entry ahead
+     */
+    private abstract static class CursorIterator<K, V, T> implements Iterator<T> {
+        private final MapCursor<K, V> cursor;
+        private boolean advanced;
+        private boolean hasNext;
+
+        CursorIterator(MapCursor<K, V> cursor) {
+            this.cursor = cursor;
+        }
+
+        abstract T current(MapCursor<K, V> cursor);
+
+        @Override
+        public boolean hasNext() {
+            if (!advanced) {
+                hasNext = cursor.next();
+                advanced = true;
+            }
+            return hasNext;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            advanced = false;
+            return current(cursor);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.librarysystem.data;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A secondary index that finds the group for an attribute in an {@link OpenHashMap},
+ * for equality lookups such as books by genre or members by status. The attribute may
+ * be null.
+ */
+public class HashIndex<K, V, A> extends SecondaryIndex<K, V, A> {
+    private final OpenHashMap<A, OpenHashMap<K, V>> groups;  // Attribute -> Values with it, by key
+
+    /**
+     * Create an index of values by the attribute the function returns
+     */
+    public HashIndex(Function<? super V, ? extends A> attribute) {
+        this(attribute, null);
+    }
+
+    /**
+     * Create an index that holds the given lock, shared with the other indexes of a map
+     */
+    HashIndex(Function<? super V, ? extends A> attribute, Object lock) {
+        super(attribute, lock);
+        this.groups = new OpenHashMap<>();
+    }
+
+    @Override
+    OpenHashMap<K, V> group(A attribute, boolean create) {
+        OpenHashMap<K, V> group = groups.get(attribute);
+        if (group == null && create) {
+            group = new OpenHashMap<>();
+            groups.put(attribute, group);
+        }
+        return group;
+    }
+
+    @Override
+    void removeGroup(A attribute) {
+        groups.remove(attribute);
+    }
+
+    @Override
+    void addAttributes(List<A> result) {
+        groups.forEach((attribute, group) -> result.add(attribute));
+    }
+
+    @Override
+    void clearGroups() {
+        groups.clear();
+    }
+}
@@ -6,56 +6,91 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 /**
  * A generic implementation of a HashMap using a hash table.
  * Uses separate chaining for collision resolution.
+ *
+ * In incremental resize mode a full table is not rehashed in one go. The bigger table is
+ * allocated and every later put or remove moves a few buckets of the old table into it,
+ * so no single operation pays for rehashing the whole map. Until the old table is empty,
+ * lookups check both tables.
  */
 public class HashMap<K, V> {
     private static final int INITIAL_CAPACITY = 16;
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
     private static final float LOAD_FACTOR = 0.75f;
+    private static final int MIGRATE_BUCKETS = 4;  // Old buckets moved per put or remove while resizing
 
     private Entry<K, V>[] table;
     private int size;
 
-    @SuppressWarnings("unchecked")
+    private final boolean incrementalResize;
+    private Entry<K, V>[] oldTable;  // Table being migrated, or null
+    private int migrated;  // Old buckets before this one are empty
+    private Collection<V> valuesView;
+    private Set<K> keysView;
+
     public HashMap() {
-        this.table = new Entry[INITIAL_CAPACITY];
+        this(0, false);
+    }
+
+    /**
+     * Create a map big enough to hold {@code expectedSize} entries without resizing
+     */
+    public HashMap(int expectedSize) {
+        this(expectedSize, false);
+    }
+
+    /**
+     * Create a map big enough to hold {@code expectedSize} entries without resizing,
+     * optionally spreading later resizes over many operations
+     */
+    @SuppressWarnings("unchecked")
+    public HashMap(int expectedSize, boolean incrementalResize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Expected size cannot be negative");
+        }
+        this.table = new Entry[capacityFor(expectedSize)];
         this.size = 0;
+        this.incrementalResize = incrementalResize;
     }
 
     /**
      * Compute hash code for key
      */
-    private int hash(K key) {
+    private static int hash(Object key, int length) {
         if (key == null) return 0;
-        return Math.abs(key.hashCode()) % table.length;
+        return (key.hashCode() & 0x7FFFFFFF) % length;
     }
 
     /**
      * Put key-value pair into map
      */
     public V put(K key, V value) {
-        if (size >= table.length * LOAD_FACTOR) {
-            resize();
+        Entry<K, V> entry = find(table, key);
+        if (entry == null && oldTable != null) {
+            entry = find(oldTable, key);
+        }
+        if (entry != null) {
+            V oldValue = entry.value;
+            entry.value = value;
+            return oldValue;
         }
 
-        int index = hash(key);
-        Entry<K, V> entry = table[index];
-
-        while (entry != null) {
-            if ((entry.key == null && key == null) || (entry.key != null && entry.key.equals(key))) {
-                V oldValue = entry.value;
-                entry.value = value;
-                return oldValue;
-            }
-            entry = entry.next;
+        if (size >= table.length * LOAD_FACTOR) {
+            grow(table.length * 2);
         }
 
+        int index = hash(key, table.length);
         Entry<K, V> newEntry = new Entry<>(key, value);
         newEntry.next = table[index];
         table[index] = newEntry;
         size++;
+        migrate();
 
         return null;
     }
@@ -64,79 +99,102 @@ public class HashMap<K, V> {
      * Get value by key
      */
     public V get(K key) {
-        int index = hash(key);
-        Entry<K, V> entry = table[index];
-
-        while (entry != null) {
-            if ((entry.key == null && key == null) || (entry.key != null && entry.key.equals(key))) {
-                return entry.value;
-            }
-            entry = entry.next;
+        Entry<K, V> entry = find(table, key);
+        if (entry == null && oldTable != null) {
+            entry = find(oldTable, key);
         }
-
-        return null;
+        return entry == null ? null : entry.value;
     }
 
     /**
      * Remove key-value pair
      */
     public V remove(K key) {
-        int index = hash(key);
-        Entry<K, V> entry = table[index];
-        Entry<K, V> prev = null;
-
-        while (entry != null) {
-            if ((entry.key == null && key == null) || (entry.key != null && entry.key.equals(key))) {
-                if (prev == null) {
-                    table[index] = entry.next;
-                } else {
-                    prev.next = entry.next;
-                }
-                size--;
-                return entry.value;
-            }
-            prev = entry;
-            entry = entry.next;
+        Entry<K, V> removed = unlink(table, key);
+        if (removed == null && oldTable != null) {
+            removed = unlink(oldTable, key);
         }
-
-        return null;
+        if (removed == null) {
+            return null;
+        }
+        size--;
+        migrate();
+        return removed.value;
     }
 
     /**
      * Check if key exists
      */
     public boolean containsKey(K key) {
-        return get(key) != null || (key == null && get(key) == null && size > 0);
+        return find(table, key) != null || (oldTable != null && find(oldTable, key) != null);
     }
 
     /**
-     * Get all values
+     * Get a copy of all values. {@link #valuesView()} and {@link #cursor()} scan the map
+     * without copying it.
      */
     public Collection<V> values() {
         List<V> values = new ArrayList<>();
-        for (Entry<K, V> entry : table) {
-            while (entry != null) {
-                values.add(entry.value);
-                entry = entry.next;
-            }
-        }
+        forEach((key, value) -> values.add(value));
         return values;
     }
 
     /**
-     * Get all keys
+     * Get a copy of all keys. {@link #keysView()} and {@link #cursor()} scan the map
+     * without copying it.
      */
     public Set<K> keySet() {
         Set<K> keys = new HashSet<>();
-        for (Entry<K, V> entry : table) {
-            while (entry != null) {
-                keys.add(entry.key);
-                entry = entry.next;
-            }
-        }
+        forEach((key, value) -> keys.add(key));
         return keys;
     }
 
+    /**
+     * Perform an action on every key-value pair, in table order. Unlike {@link #values()}
+     * and {@link #keySet()}, nothing is copied, so the map must not be modified until it
+     * returns.
+     */
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        if (oldTable != null) {
+            forEach(oldTable, action);
+        }
+        forEach(table, action);
+    }
+
+    /**
+     * Get a cursor positioned before the first entry. Scanning with it allocates nothing.
+     */
+    public MapCursor<K, V> cursor() {
+        return new EntryCursor();
+    }
+
+    /**
+     * Get a read-only live view of the values. Each iteration scans the map as it is at
+     * that moment, so the map must not be changed during one. Its streams split the
+     * table into bucket ranges, so {@code valuesView().parallelStream()} scans a big map
+     * with fork/join.
+     */
+    public Collection<V> valuesView() {
+        if (valuesView == null) {
+            valuesView = CursorViews.values(this::cursor, () -> new TableSpliterator<>(false), this::size);
+        }
+        return valuesView;
+    }
+
+    /**
+     * Get a read-only live view of the keys. Each iteration scans the map as it is at
+     * that moment, so the map must not be changed during one. Its streams split like
+     * those of {@link #valuesView()}.
+     */
+    @SuppressWarnings("unchecked")
+    public Set<K> keysView() {
+        if (keysView == null) {
+            keysView = CursorViews.keys(this::cursor, () -> new TableSpliterator<>(true), this::size,
+                    key -> containsKey((K) key));
+        }
+        return keysView;
+    }
+
     /**
      * Get size
      */
@@ -156,26 +214,293 @@ public class HashMap<K, V> {
      */
     public void clear() {
         Arrays.fill(table, null);
+        oldTable = null;
         size = 0;
     }
 
     /**
-     * Resize the hash table
+     * Grow the table, if needed, so that {@code expectedSize} entries fit without another
+     * resize. The table is rebuilt at once even in incremental mode, which makes this the
+     * way to size a map before a bulk load.
+     */
+    public void ensureCapacity(int expectedSize) {
+        int capacity = capacityFor(expectedSize);
+        if (capacity > table.length) {
+            finishMigration();
+            rehash(capacity);
+        }
+    }
+
+    /**
+     * Smallest power-of-two table that holds {@code expectedSize} entries under the load factor
+     */
+    private static int capacityFor(int expectedSize) {
+        int capacity = INITIAL_CAPACITY;
+        while (capacity < MAXIMUM_CAPACITY && capacity * LOAD_FACTOR < expectedSize) {
+            capacity *= 2;
+        }
+        return capacity;
+    }
+
+    /**
+     * Make room for more entries, either by rehashing now or, in incremental mode, by
+     * starting to migrate into a new table
      */
     @SuppressWarnings("unchecked")
-    private void resize() {
-        Entry<K, V>[] oldTable = table;
-        table = new Entry[oldTable.length * 2];
-        size = 0;
+    private void grow(int capacity) {
+        finishMigration();
+        if (!incrementalResize) {
+            rehash(capacity);
+            return;
+        }
+
+        oldTable = table;
+        migrated = 0;
+        table = new Entry[capacity];
+    }
+
+    /**
+     * Move the next few buckets of the old table into the new one. The new table is twice
+     * as big, so the old one is empty long before the new one fills up.
+     */
+    private void migrate() {
+        if (oldTable != null) {
+            migrateBuckets(MIGRATE_BUCKETS);
+        }
+    }
+
+    private void finishMigration() {
+        if (oldTable != null) {
+            migrateBuckets(oldTable.length);
+        }
+    }
+
+    private void migrateBuckets(int count) {
+        int end = Math.min(oldTable.length, migrated + count);
+        for (; migrated < end; migrated++) {
+            transfer(oldTable[migrated]);
+            oldTable[migrated] = null;
+        }
+        if (migrated == oldTable.length) {
+            oldTable = null;
+        }
+    }
+
+    /**
+     * Rehash every entry into a table of the given size
+     */
+    @SuppressWarnings("unchecked")
+    private void rehash(int capacity) {
+        Entry<K, V>[] previous = table;
+        table = new Entry[capacity];
+        for (Entry<K, V> entry : previous) {
+            transfer(entry);
+        }
+    }
+
+    /**
+     * Relink a chain of entries into the current table. The entries are reused, so
+     * nothing is allocated and no keys are compared.
+     */
+    private void transfer(Entry<K, V> entry) {
+        while (entry != null) {
+            Entry<K, V> next = entry.next;
+            int index = hash(entry.key, table.length);
+            entry.next = table[index];
+            table[index] = entry;
+            entry = next;
+        }
+    }
+
+    private static <K, V> Entry<K, V> find(Entry<K, V>[] table, K key) {
+        Entry<K, V> entry = table[hash(key, table.length)];
+        while (entry != null) {
+            if ((entry.key == null && key == null) || (entry.key != null && entry.key.equals(key))) {
+                return entry;
+            }
+            entry = entry.next;
+        }
+        return null;
+    }
+
+    /**
+     * Remove a key's entry from its chain and return it, or null if it is not there
+     */
+    private static <K, V> Entry<K, V> unlink(Entry<K, V>[] table, K key) {
+        int index = hash(key, table.length);
+        Entry<K, V> entry = table[index];
+        Entry<K, V> prev = null;
+
+        while (entry != null) {
+            if ((entry.key == null && key == null) || (entry.key != null && entry.key.equals(key))) {
+                if (prev == null) {
+                    table[index] = entry.next;
+                } else {
+                    prev.next = entry.next;
+                }
+                return entry;
+            }
+            prev = entry;
+            entry = entry.next;
+        }
+        return null;
+    }
 
-        for (Entry<K, V> entry : oldTable) {
+    private static <K, V> void forEach(Entry<K, V>[] table, BiConsumer<? super K, ? super V> action) {
+        for (Entry<K, V> entry : table) {
             while (entry != null) {
-                put(entry.key, entry.value);
+                action.accept(entry.key, entry.value);
                 entry = entry.next;
             }
         }
     }
 
+    /**
+     * Walks the old table, if a resize is in progress, then the current one
+     */
+    private class EntryCursor implements MapCursor<K, V> {
+        private Entry<K, V>[] scanning;
+        private int bucket;
+        private Entry<K, V> current;
+
+        EntryCursor() {
+            reset();
+        }
+
+        @Override
+        public boolean next() {
+            Entry<K, V> entry = current == null ? null : current.next;
+            while (entry == null) {
+                if (bucket == scanning.length) {
+                    if (scanning == table) {
+                        current = null;
+                        return false;
+                    }
+                    scanning = table;
+                    bucket = 0;
+                } else {
+                    entry = scanning[bucket++];
+                }
+            }
+            current = entry;
+            return true;
+        }
+
+        @Override
+        public K key() {
+            return entry().key;
+        }
+
+        @Override
+        public V value() {
+            return entry().value;
+        }
+
+        @Override
+        public void reset() {
+            scanning = oldTable != null ? oldTable : table;
+            bucket = 0;
+            current = null;
+        }
+
+        private Entry<K, V> entry() {
+            if (current == null) {
+                throw new IllegalStateException("Cursor is not on an entry");
+            }
+            return current;
+        }
+    }
+
+    /**
+     * Walks a range of buckets, numbering the old table's buckets, if a resize is in
+     * progress, before the current table's. Splitting halves the range, so each half
+     * holds about half the entries.
+     */
+    private class TableSpliterator<T> implements Spliterator<T> {
+        private final boolean keys;
+        private final Entry<K, V>[] first;
+        private final Entry<K, V>[] second;
+        private int index;
+        private final int fence;
+        private Entry<K, V> current;
+        private long estimate;
+
+        @SuppressWarnings("unchecked")
+        TableSpliterator(boolean keys) {
+            this(keys, oldTable != null ? oldTable : new Entry[0], table, 0,
+                    (oldTable != null ? oldTable.length : 0) + table.length, size);
+        }
+
+        private TableSpliterator(boolean keys, Entry<K, V>[] first, Entry<K, V>[] second, int index, int fence,
+                                 long estimate) {
+            this.keys = keys;
+            this.first = first;
+            this.second = second;
+            this.index = index;
+            this.fence = fence;
+            this.estimate = estimate;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            while (current != null || index < fence) {
+                if (current == null) {
+                    current = bucket(index++);
+                } else {
+                    Entry<K, V> entry = current;
+                    current = entry.next;
+                    action.accept(item(entry));
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            for (Entry<K, V> entry = current; entry != null; entry = entry.next) {
+                action.accept(item(entry));
+            }
+            current = null;
+            for (; index < fence; index++) {
+                for (Entry<K, V> entry = bucket(index); entry != null; entry = entry.next) {
+                    action.accept(item(entry));
+                }
+            }
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            int mid = (index + fence) >>> 1;
+            if (current != null || index >= mid) {
+                return null;
+            }
+            estimate >>>= 1;
+            Spliterator<T> prefix = new TableSpliterator<>(keys, first, second, index, mid, estimate);
+            index = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return estimate;
+        }
+
+        @Override
+        public int characteristics() {
+            return keys ? DISTINCT : 0;
+        }
+
+        private Entry<K, V> bucket(int i) {
+            return i < first.length ? first[i] : second[i - first.length];
+        }
+
+        @SuppressWarnings("unchecked")
+        private T item(Entry<K, V> entry) {
+            return (T) (keys ? entry.key : entry.value);
+        }
+    }
+
     /**
      * Inner class for hash table entries
      */
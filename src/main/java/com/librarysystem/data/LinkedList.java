@@ -1,10 +1,16 @@
 package com.librarysystem.data;
 
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * A generic doubly-linked list implementation.
  * Supports insertion, deletion, and traversal operations.
+ *
+ * Adding an element returns its {@link Node}, a handle that removes the element in
+ * constant time with {@link #remove(Node)}, without searching for it first.
  */
 public class LinkedList<E> implements Iterable<E> {
     private Node<E> head;
@@ -19,9 +25,11 @@ public class LinkedList<E> implements Iterable<E> {
 
     /**
      * Add element to the end of the list
+     *
+     * @return handle for removing the element later
      */
-    public void add(E element) {
-        Node<E> newNode = new Node<>(element);
+    public Node<E> add(E element) {
+        Node<E> newNode = new Node<>(this, element);
         if (isEmpty()) {
             head = tail = newNode;
         } else {
@@ -30,21 +38,23 @@ public class LinkedList<E> implements Iterable<E> {
             tail = newNode;
         }
         size++;
+        return newNode;
     }
 
     /**
      * Add element at specific index
+     *
+     * @return handle for removing the element later
      */
-    public void add(int index, E element) {
+    public Node<E> add(int index, E element) {
         if (index < 0 || index > size) {
             throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
         }
         if (index == size) {
-            add(element);
-            return;
+            return add(element);
         }
 
-        Node<E> newNode = new Node<>(element);
+        Node<E> newNode = new Node<>(this, element);
         Node<E> node = getNode(index);
 
         newNode.next = node;
@@ -57,48 +67,91 @@ public class LinkedList<E> implements Iterable<E> {
         }
         node.prev = newNode;
         size++;
+        return newNode;
     }
 
     /**
-     * Remove element at index
+     * Add element after the last element that is not greater than it, searching from the
+     * end. Keeps a sorted list sorted, with equal elements in the order they were added;
+     * adding elements that arrive nearly in order costs constant time each.
+     *
+     * @return handle for removing the element later
      */
-    public E remove(int index) {
-        if (index < 0 || index >= size) {
-            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    public Node<E> addSorted(E element, Comparator<? super E> comparator) {
+        Node<E> before = tail;
+        while (before != null && comparator.compare(before.element, element) > 0) {
+            before = before.prev;
         }
-
-        Node<E> node = getNode(index);
-        E element = node.element;
-
-        if (node.prev != null) {
-            node.prev.next = node.next;
-        } else {
-            head = node.next;
+        if (before == tail) {
+            return add(element);
         }
 
-        if (node.next != null) {
-            node.next.prev = node.prev;
+        Node<E> newNode = new Node<>(this, element);
+        Node<E> after = before != null ? before.next : head;
+        newNode.prev = before;
+        newNode.next = after;
+        after.prev = newNode;
+        if (before != null) {
+            before.next = newNode;
         } else {
-            tail = node.prev;
+            head = newNode;
         }
+        size++;
+        return newNode;
+    }
 
-        size--;
-        return element;
+    /**
+     * Remove element at index
+     */
+    public E remove(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return unlink(getNode(index));
     }
 
     /**
      * Remove first occurrence of element
      */
     public boolean remove(E element) {
-        for (int i = 0; i < size; i++) {
-            if (getNode(i).element.equals(element)) {
-                remove(i);
+        for (Node<E> node = head; node != null; node = node.next) {
+            if (Objects.equals(node.element, element)) {
+                unlink(node);
                 return true;
             }
         }
         return false;
     }
 
+    /**
+     * Remove the element a handle was returned for, in constant time
+     *
+     * @return the removed element
+     * @throws IllegalArgumentException if the handle's element is no longer in this list
+     */
+    public E remove(Node<E> node) {
+        if (node == null || node.list != this) {
+            throw new IllegalArgumentException("Node is not in this list");
+        }
+        return unlink(node);
+    }
+
+    /**
+     * Replace the element a handle was returned for, in constant time. The handle stays
+     * valid and now holds the new element.
+     *
+     * @return the element replaced
+     * @throws IllegalArgumentException if the handle's element is no longer in this list
+     */
+    public E set(Node<E> node, E element) {
+        if (node == null || node.list != this) {
+            throw new IllegalArgumentException("Node is not in this list");
+        }
+        E old = node.element;
+        node.element = element;
+        return old;
+    }
+
     /**
      * Get element at index
      */
@@ -120,10 +173,12 @@ public class LinkedList<E> implements Iterable<E> {
      * Get index of element
      */
     public int indexOf(E element) {
-        for (int i = 0; i < size; i++) {
-            if (getNode(i).element.equals(element)) {
-                return i;
+        int index = 0;
+        for (Node<E> node = head; node != null; node = node.next) {
+            if (Objects.equals(node.element, element)) {
+                return index;
             }
+            index++;
         }
         return -1;
     }
@@ -146,10 +201,37 @@ public class LinkedList<E> implements Iterable<E> {
      * Clear the list
      */
     public void clear() {
+        // Detach the nodes so handles to them can no longer remove anything
+        for (Node<E> node = head; node != null; node = node.next) {
+            node.list = null;
+        }
         head = tail = null;
         size = 0;
     }
 
+    /**
+     * Unlink a node that is in this list
+     */
+    private E unlink(Node<E> node) {
+        if (node.prev != null) {
+            node.prev.next = node.next;
+        } else {
+            head = node.next;
+        }
+
+        if (node.next != null) {
+            node.next.prev = node.prev;
+        } else {
+            tail = node.prev;
+        }
+
+        // The node keeps its next pointer, so an iterator standing on it can move on
+        node.prev = null;
+        node.list = null;
+        size--;
+        return node.element;
+    }
+
     /**
      * Get node at index
      */
@@ -169,10 +251,14 @@ public class LinkedList<E> implements Iterable<E> {
         }
     }
 
+    /**
+     * Iterator whose {@code remove()} takes out the element last returned in constant time
+     */
     @Override
     public Iterator<E> iterator() {
         return new Iterator<E>() {
             private Node<E> current = head;
+            private Node<E> lastReturned;
 
             @Override
             public boolean hasNext() {
@@ -184,23 +270,132 @@ public class LinkedList<E> implements Iterable<E> {
                 if (!hasNext()) {
                     throw new NoSuchElementException();
                 }
-                E element = current.element;
+                lastReturned = current;
                 current = current.next;
-                return element;
+                return lastReturned.element;
+            }
+
+            @Override
+            public void remove() {
+                if (lastReturned == null) {
+                    throw new IllegalStateException("next() has not been called since the last remove()");
+                }
+                if (lastReturned.list == LinkedList.this) {
+                    unlink(lastReturned);
+                }
+                lastReturned = null;
             }
         };
     }
 
+    @Override
+    public Spliterator<E> spliterator() {
+        return new NodeSpliterator<>(head, size);
+    }
+
+    /**
+     * Stream over the elements in order
+     */
+    public Stream<E> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Parallel stream over the elements. Each split walks to the middle of its part, so
+     * the parts stay balanced, but that walk makes this pay off only for long lists with
+     * real work per element.
+     */
+    public Stream<E> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    /**
+     * Covers {@code remaining} nodes starting at {@code node}. Splitting hands the first
+     * half to the new spliterator, so both halves know their exact size.
+     */
+    private static final class NodeSpliterator<E> implements Spliterator<E> {
+        private Node<E> node;
+        private int remaining;
+
+        NodeSpliterator(Node<E> node, int remaining) {
+            this.node = node;
+            this.remaining = remaining;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super E> action) {
+            if (remaining == 0) {
+                return false;
+            }
+            E element = node.element;
+            node = node.next;
+            remaining--;
+            action.accept(element);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super E> action) {
+            for (; remaining > 0; remaining--) {
+                E element = node.element;
+                node = node.next;
+                action.accept(element);
+            }
+        }
+
+        @Override
+        public Spliterator<E> trySplit() {
+            int half = remaining >>> 1;
+            if (half == 0) {
+                return null;
+            }
+            Node<E> start = node;
+            Node<E> middle = node;
+            for (int i = 0; i < half; i++) {
+                middle = middle.next;
+            }
+            node = middle;
+            remaining -= half;
+            return new NodeSpliterator<>(start, half);
+        }
+
+        @Override
+        public long estimateSize() {
+            return remaining;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED;
+        }
+    }
+
     /**
-     * Inner class for linked list nodes
+     * A node of the list, handed out by {@code add} as a handle to its element
      */
-    private static class Node<E> {
-        E element;
-        Node<E> next;
-        Node<E> prev;
+    public static final class Node<E> {
+        private E element;
+        private Node<E> next;
+        private Node<E> prev;
+        private LinkedList<E> list;  // Null once removed
 
-        Node(E element) {
+        private Node(LinkedList<E> list, E element) {
+            this.list = list;
             this.element = element;
         }
+
+        /**
+         * Get the element this node holds
+         */
+        public E getElement() {
+            return element;
+        }
+
+        /**
+         * Check if the element is still in the list it was added to
+         */
+        public boolean isLinked() {
+            return list != null;
+        }
     }
 }
@@ -0,0 +1,40 @@
+package com.librarysystem.data;
+
+/**
+ * A position in a map's entries, for scanning a map without copying it or allocating
+ * an object per entry.
+ * <pre>
+ * MapCursor&lt;String, Book&gt; cursor = books.cursor();
+ * while (cursor.next()) {
+ *     total += cursor.value().getAvailableCopies();
+ * }
+ * </pre>
+ * A cursor can be rewound with {@link #reset()} and used for any number of scans. It is
+ * not thread-safe, so each thread needs its own. Unless the map says otherwise, the map
+ * must not be changed while a scan is in progress.
+ */
+public interface MapCursor<K, V> {
+
+    /**
+     * Move to the next entry
+     *
+     * @return false if there are no more entries
+     */
+    boolean next();
+
+    /**
+     * Key of the current entry
+     */
+    K key();
+
+    /**
+     * Value of the current entry
+     */
+    V value();
+
+    /**
+     * Rewind to before the first entry, picking up any changes made to the map since
+     * the last scan
+     */
+    void reset();
+}
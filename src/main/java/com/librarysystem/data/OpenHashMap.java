@@ -0,0 +1,608 @@
+package com.librarysystem.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * A generic HashMap using open addressing with linear probing.
+ * Keys, values and key hashes are kept in parallel arrays whose length is a power of two,
+ * so the slot for a key is found with a bit mask instead of a division, and a collision is
+ * resolved by looking at the next slot of the same array instead of following a chain of
+ * entry objects. Probes only read the hash array until a stored hash matches, so keys in
+ * other slots are never touched. Removing a key shifts the rest of its probe run back, so
+ * no tombstones are left behind.
+ * Has the same methods as {@link HashMap}.
+ *
+ * In incremental resize mode a full table is not rehashed in one go. The bigger table is
+ * allocated and every later put or remove moves a few slots of the old table into it,
+ * so no single operation pays for copying the whole map. Until the old table is empty,
+ * lookups check both tables.
+ */
+public class OpenHashMap<K, V> {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+    private static final float LOAD_FACTOR = 0.5f;
+    private static final int MIGRATE_SLOTS = 8;  // Old slots moved per put or remove while resizing
+    private static final Object NULL_KEY = new Object();  // Stands in for a null key
+
+    private Object[] keys;
+    private Object[] values;
+    private int[] hashes;
+    private int size;
+    private int threshold;
+
+    private final boolean incrementalResize;
+    private Object[] oldKeys;  // Table being migrated, or null
+    private Object[] oldValues;
+    private int[] oldHashes;
+    private int migrated;  // Old slots before this one are empty
+    private Collection<V> valuesView;
+    private Set<K> keysView;
+
+    public OpenHashMap() {
+        this(0, false);
+    }
+
+    /**
+     * Create a map big enough to hold {@code expectedSize} entries without resizing
+     */
+    public OpenHashMap(int expectedSize) {
+        this(expectedSize, false);
+    }
+
+    /**
+     * Create a map big enough to hold {@code expectedSize} entries without resizing,
+     * optionally spreading later resizes over many operations
+     */
+    public OpenHashMap(int expectedSize, boolean incrementalResize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Expected size cannot be negative");
+        }
+        int capacity = capacityFor(expectedSize);
+        this.keys = new Object[capacity];
+        this.values = new Object[capacity];
+        this.hashes = new int[capacity];
+        this.threshold = (int) (capacity * LOAD_FACTOR);
+        this.size = 0;
+        this.incrementalResize = incrementalResize;
+    }
+
+    /**
+     * Compute hash code for key. Multiplying by the golden ratio and folding the high
+     * bits down makes keys with similar hash codes, like sequential IDs, land far apart.
+     * Zero marks an empty slot, so it is never returned.
+     */
+    private static int hash(Object key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        h ^= h >>> 16;
+        return h == 0 ? 1 : h;
+    }
+
+    /**
+     * Put key-value pair into map
+     */
+    public V put(K key, V value) {
+        Object k = key == null ? NULL_KEY : key;
+        int h = hash(k);
+        int index = find(keys, hashes, k, h);
+        if (index >= 0) {
+            V oldValue = valueAt(values, index);
+            values[index] = value;
+            return oldValue;
+        }
+        if (oldKeys != null) {
+            index = find(oldKeys, oldHashes, k, h);
+            if (index >= 0) {
+                V oldValue = valueAt(oldValues, index);
+                oldValues[index] = value;
+                return oldValue;
+            }
+        }
+
+        if (size >= threshold) {
+            grow(keys.length * 2);
+        }
+        insert(keys, values, hashes, k, value, h);
+        size++;
+        migrate();
+        return null;
+    }
+
+    /**
+     * Get value by key
+     */
+    public V get(K key) {
+        Object k = key == null ? NULL_KEY : key;
+        int h = hash(k);
+        int index = find(keys, hashes, k, h);
+        if (index >= 0) {
+            return valueAt(values, index);
+        }
+        if (oldKeys != null) {
+            index = find(oldKeys, oldHashes, k, h);
+            if (index >= 0) {
+                return valueAt(oldValues, index);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Remove key-value pair
+     */
+    public V remove(K key) {
+        Object k = key == null ? NULL_KEY : key;
+        int h = hash(k);
+        V oldValue;
+        int index = find(keys, hashes, k, h);
+        if (index >= 0) {
+            oldValue = valueAt(values, index);
+            removeAt(keys, values, hashes, index);
+        } else if (oldKeys != null && (index = find(oldKeys, oldHashes, k, h)) >= 0) {
+            oldValue = valueAt(oldValues, index);
+            removeAt(oldKeys, oldValues, oldHashes, index);
+        } else {
+            return null;
+        }
+        size--;
+        migrate();
+        return oldValue;
+    }
+
+    /**
+     * Check if key exists
+     */
+    public boolean containsKey(K key) {
+        Object k = key == null ? NULL_KEY : key;
+        int h = hash(k);
+        return find(keys, hashes, k, h) >= 0 || (oldKeys != null && find(oldKeys, oldHashes, k, h) >= 0);
+    }
+
+    /**
+     * Get a copy of all values. {@link #valuesView()} and {@link #cursor()} scan the map
+     * without copying it.
+     */
+    public Collection<V> values() {
+        List<V> result = new ArrayList<>(size);
+        forEach((key, value) -> result.add(value));
+        return result;
+    }
+
+    /**
+     * Get a copy of all keys. {@link #keysView()} and {@link #cursor()} scan the map
+     * without copying it.
+     */
+    public Set<K> keySet() {
+        Set<K> result = new HashSet<>();
+        forEach((key, value) -> result.add(key));
+        return result;
+    }
+
+    /**
+     * Perform an action on every key-value pair, in table order. Nothing is copied, so
+     * the map must not be modified until it returns.
+     */
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        if (oldKeys != null) {
+            forEach(oldKeys, oldValues, oldHashes, action);
+        }
+        forEach(keys, values, hashes, action);
+    }
+
+    /**
+     * Get a cursor positioned before the first entry. Scanning with it allocates nothing.
+     */
+    public MapCursor<K, V> cursor() {
+        return new SlotCursor();
+    }
+
+    /**
+     * Get a read-only live view of the values. Each iteration scans the map as it is at
+     * that moment, so the map must not be changed during one. Its streams split the
+     * table into slot ranges, so {@code valuesView().parallelStream()} scans a big map
+     * with fork/join.
+     */
+    public Collection<V> valuesView() {
+        if (valuesView == null) {
+            valuesView = CursorViews.values(this::cursor, () -> new SlotSpliterator<>(false), this::size);
+        }
+        return valuesView;
+    }
+
+    /**
+     * Get a read-only live view of the keys. Each iteration scans the map as it is at
+     * that moment, so the map must not be changed during one. Its streams split like
+     * those of {@link #valuesView()}.
+     */
+    @SuppressWarnings("unchecked")
+    public Set<K> keysView() {
+        if (keysView == null) {
+            keysView = CursorViews.keys(this::cursor, () -> new SlotSpliterator<>(true), this::size,
+                    key -> containsKey((K) key));
+        }
+        return keysView;
+    }
+
+    /**
+     * Get size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Check if empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Clear the map
+     */
+    public void clear() {
+        Arrays.fill(keys, null);
+        Arrays.fill(values, null);
+        Arrays.fill(hashes, 0);
+        oldKeys = null;
+        oldValues = null;
+        oldHashes = null;
+        size = 0;
+    }
+
+    /**
+     * Grow the table, if needed, so that {@code expectedSize} entries fit without another
+     * resize. The table is rebuilt at once even in incremental mode, which makes this the
+     * way to size a map before a bulk load.
+     */
+    public void ensureCapacity(int expectedSize) {
+        int capacity = capacityFor(expectedSize);
+        if (capacity > keys.length) {
+            finishMigration();
+            rehash(capacity);
+        }
+    }
+
+    /**
+     * Smallest power-of-two table that holds {@code expectedSize} entries under the load factor
+     */
+    private static int capacityFor(int expectedSize) {
+        int capacity = INITIAL_CAPACITY;
+        while (capacity < MAXIMUM_CAPACITY && capacity * LOAD_FACTOR < expectedSize) {
+            capacity *= 2;
+        }
+        return capacity;
+    }
+
+    /**
+     * Make room for more entries, either by rebuilding the table now or, in incremental
+     * mode, by starting to migrate into a new one
+     */
+    private void grow(int capacity) {
+        finishMigration();
+        if (!incrementalResize) {
+            rehash(capacity);
+            return;
+        }
+
+        oldKeys = keys;
+        oldValues = values;
+        oldHashes = hashes;
+        migrated = 0;
+        keys = new Object[capacity];
+        values = new Object[capacity];
+        hashes = new int[capacity];
+        threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    /**
+     * Move the next few slots of the old table into the new one. The new table is twice
+     * as big, so the old one is empty long before the new one fills up.
+     */
+    private void migrate() {
+        if (oldKeys != null) {
+            migrateSlots(MIGRATE_SLOTS);
+        }
+    }
+
+    private void finishMigration() {
+        if (oldKeys != null) {
+            migrateSlots(oldKeys.length);
+        }
+    }
+
+    /**
+     * Empty {@code count} old slots in order. Entries leave the old table with the same
+     * backward shift as a remove, so the keys still waiting there stay reachable, and
+     * nothing is ever shifted back into a slot that has already been emptied.
+     */
+    private void migrateSlots(int count) {
+        int end = Math.min(oldKeys.length, migrated + count);
+        for (; migrated < end; migrated++) {
+            int h;
+            while ((h = oldHashes[migrated]) != 0) {
+                insert(keys, values, hashes, oldKeys[migrated], oldValues[migrated], h);
+                removeAt(oldKeys, oldValues, oldHashes, migrated);
+            }
+        }
+        if (migrated == oldKeys.length) {
+            oldKeys = null;
+            oldValues = null;
+            oldHashes = null;
+        }
+    }
+
+    /**
+     * Rebuild into a table of the given size. Keys are known to be distinct and their
+     * hashes are stored, so each one goes straight into the first free slot of its run.
+     */
+    private void rehash(int capacity) {
+        Object[] previousKeys = keys;
+        Object[] previousValues = values;
+        int[] previousHashes = hashes;
+        keys = new Object[capacity];
+        values = new Object[capacity];
+        hashes = new int[capacity];
+        threshold = (int) (capacity * LOAD_FACTOR);
+
+        for (int i = 0; i < previousKeys.length; i++) {
+            int h = previousHashes[i];
+            if (h != 0) {
+                insert(keys, values, hashes, previousKeys[i], previousValues[i], h);
+            }
+        }
+    }
+
+    /**
+     * Find the slot holding a key, or -1 if the key is not in the table
+     */
+    private static int find(Object[] keys, int[] hashes, Object k, int h) {
+        int mask = keys.length - 1;
+        int index = h & mask;
+        int stored;
+        while ((stored = hashes[index]) != 0) {
+            Object current;
+            if (stored == h && ((current = keys[index]) == k || current.equals(k))) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Store a key known not to be in the table in the first free slot of its run
+     */
+    private static void insert(Object[] keys, Object[] values, int[] hashes, Object k, Object value, int h) {
+        int mask = keys.length - 1;
+        int index = h & mask;
+        while (hashes[index] != 0) {
+            index = (index + 1) & mask;
+        }
+        keys[index] = k;
+        values[index] = value;
+        hashes[index] = h;
+    }
+
+    /**
+     * Empty a slot, shifting later entries of its probe run back so none of them become
+     * unreachable
+     */
+    private static void removeAt(Object[] keys, Object[] values, int[] hashes, int index) {
+        int mask = keys.length - 1;
+        int hole = index;
+        int next = index;
+        while (true) {
+            next = (next + 1) & mask;
+            int h = hashes[next];
+            if (h == 0) {
+                break;
+            }
+            // An entry can fill the hole unless its home slot lies after the hole
+            int home = h & mask;
+            boolean homeAfterHole = hole < next ? home > hole && home <= next : home > hole || home <= next;
+            if (!homeAfterHole) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hashes[hole] = h;
+                hole = next;
+            }
+        }
+        keys[hole] = null;
+        values[hole] = null;
+        hashes[hole] = 0;
+    }
+
+    /**
+     * Walks the old table, if a resize is in progress, then the current one
+     */
+    private class SlotCursor implements MapCursor<K, V> {
+        private Object[] scanKeys;
+        private Object[] scanValues;
+        private int[] scanHashes;
+        private int index;
+
+        SlotCursor() {
+            reset();
+        }
+
+        @Override
+        public boolean next() {
+            while (true) {
+                while (++index < scanHashes.length) {
+                    if (scanHashes[index] != 0) {
+                        return true;
+                    }
+                }
+                if (scanHashes == hashes) {
+                    index = scanHashes.length;  // Stay at the end
+                    return false;
+                }
+                scanKeys = keys;
+                scanValues = values;
+                scanHashes = hashes;
+                index = -1;
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public K key() {
+            Object k = scanKeys[slot()];
+            return k == NULL_KEY ? null : (K) k;
+        }
+
+        @Override
+        public V value() {
+            return valueAt(scanValues, slot());
+        }
+
+        @Override
+        public void reset() {
+            boolean migrating = oldKeys != null;
+            scanKeys = migrating ? oldKeys : keys;
+            scanValues = migrating ? oldValues : values;
+            scanHashes = migrating ? oldHashes : hashes;
+            index = -1;
+        }
+
+        private int slot() {
+            if (index < 0 || index >= scanHashes.length || scanHashes[index] == 0) {
+                throw new IllegalStateException("Cursor is not on an entry");
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Walks a range of slots, numbering the old table's slots, if a resize is in
+     * progress, before the current table's. Splitting halves the range, and entries are
+     * spread evenly over the slots, so each half holds about half the entries.
+     */
+    private class SlotSpliterator<T> implements Spliterator<T> {
+        private final boolean keys;
+        private final Object[] firstKeys;
+        private final Object[] firstValues;
+        private final int[] firstHashes;
+        private final Object[] secondKeys;
+        private final Object[] secondValues;
+        private final int[] secondHashes;
+        private int index;
+        private final int fence;
+        private long estimate;
+
+        SlotSpliterator(boolean keys) {
+            boolean migrating = oldKeys != null;
+            this.keys = keys;
+            this.firstKeys = migrating ? oldKeys : new Object[0];
+            this.firstValues = migrating ? oldValues : new Object[0];
+            this.firstHashes = migrating ? oldHashes : new int[0];
+            this.secondKeys = OpenHashMap.this.keys;
+            this.secondValues = values;
+            this.secondHashes = hashes;
+            this.index = 0;
+            this.fence = firstHashes.length + secondHashes.length;
+            this.estimate = size;
+        }
+
+        private SlotSpliterator(SlotSpliterator<T> parent, int index, int fence) {
+            this.keys = parent.keys;
+            this.firstKeys = parent.firstKeys;
+            this.firstValues = parent.firstValues;
+            this.firstHashes = parent.firstHashes;
+            this.secondKeys = parent.secondKeys;
+            this.secondValues = parent.secondValues;
+            this.secondHashes = parent.secondHashes;
+            this.index = index;
+            this.fence = fence;
+            this.estimate = parent.estimate;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            while (index < fence) {
+                int slot = index++;
+                if (slot < firstHashes.length) {
+                    if (firstHashes[slot] != 0) {
+                        action.accept(item(firstKeys, firstValues, slot));
+                        return true;
+                    }
+                } else if (secondHashes[slot - firstHashes.length] != 0) {
+                    action.accept(item(secondKeys, secondValues, slot - firstHashes.length));
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            int end = Math.min(fence, firstHashes.length);
+            for (; index < end; index++) {
+                if (firstHashes[index] != 0) {
+                    action.accept(item(firstKeys, firstValues, index));
+                }
+            }
+            for (; index < fence; index++) {
+                int slot = index - firstHashes.length;
+                if (secondHashes[slot] != 0) {
+                    action.accept(item(secondKeys, secondValues, slot));
+                }
+            }
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            int mid = (index + fence) >>> 1;
+            if (index >= mid) {
+                return null;
+            }
+            estimate >>>= 1;
+            Spliterator<T> prefix = new SlotSpliterator<>(this, index, mid);
+            index = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return estimate;
+        }
+
+        @Override
+        public int characteristics() {
+            return keys ? DISTINCT : 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        private T item(Object[] slotKeys, Object[] slotValues, int slot) {
+            if (!keys) {
+                return (T) slotValues[slot];
+            }
+            Object k = slotKeys[slot];
+            return k == NULL_KEY ? null : (T) k;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, V> void forEach(Object[] keys, Object[] values, int[] hashes,
+                                       BiConsumer<? super K, ? super V> action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (hashes[i] != 0) {
+                Object k = keys[i];
+                action.accept(k == NULL_KEY ? null : (K) k, (V) values[i]);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> V valueAt(Object[] values, int index) {
+        return (V) values[index];
+    }
+}
@@ -1,25 +1,71 @@
 package com.librarysystem.data;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 import java.util.NoSuchElementException;
 
 /**
- * A generic priority queue implementation using a binary min-heap.
+ * A generic priority queue implementation using a min-heap.
+ *
+ * The heap is binary by default. A wider heap (arity 4 or 8) is shallower, so an offer
+ * does fewer comparisons and a poll reads children that sit next to each other in the
+ * array, which often makes it faster on large queues.
+ *
+ * An indexed queue also remembers where each element sits in the heap, so it can
+ * {@link #remove(Comparable) remove} an element or {@link #update(Comparable) move} it
+ * after its priority changed in O(log n) instead of searching the whole heap. Elements
+ * of an indexed queue are told apart by {@code equals}, so each can be queued only once.
  */
 public class PriorityQueue<E extends Comparable<E>> {
-    private final List<E> heap;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int MAXIMUM_ARITY = 64;
+
+    private final int arity;
+    private Object[] heap;
+    private int size;
+    private final OpenHashMap<E, Position> positions;  // Null unless indexed
+    private Position[] slots;  // Position of heap[i] is slots[i]; null unless indexed
 
     public PriorityQueue() {
-        this.heap = new ArrayList<>();
+        this(2, false);
+    }
+
+    /**
+     * Create a queue whose heap nodes have {@code arity} children
+     *
+     * @param indexed whether to track element positions for O(log n) update and remove
+     */
+    public PriorityQueue(int arity, boolean indexed) {
+        if (arity < 2 || arity > MAXIMUM_ARITY) {
+            throw new IllegalArgumentException("Arity must be between 2 and " + MAXIMUM_ARITY + ": " + arity);
+        }
+        this.arity = arity;
+        this.heap = new Object[INITIAL_CAPACITY];
+        this.positions = indexed ? new OpenHashMap<>() : null;
+        this.slots = indexed ? new Position[INITIAL_CAPACITY] : null;
     }
 
     /**
      * Add element to priority queue
+     *
+     * @throws IllegalArgumentException if the queue is indexed and already holds the element
      */
     public void offer(E element) {
-        heap.add(element);
-        siftUp(heap.size() - 1);
+        if (element == null) {
+            throw new IllegalArgumentException("Element cannot be null");
+        }
+        if (size == heap.length) {
+            grow();
+        }
+        if (positions != null) {
+            if (positions.containsKey(element)) {
+                throw new IllegalArgumentException("Element is already in the queue: " + element);
+            }
+            Position position = new Position();
+            positions.put(element, position);
+            slots[size] = position;
+        }
+        heap[size] = element;
+        siftUp(size++);
     }
 
     /**
@@ -29,15 +75,8 @@ public class PriorityQueue<E extends Comparable<E>> {
         if (isEmpty()) {
             throw new NoSuchElementException("Priority queue is empty");
         }
-
-        E root = heap.get(0);
-        E last = heap.remove(heap.size() - 1);
-
-        if (!heap.isEmpty()) {
-            heap.set(0, last);
-            siftDown(0);
-        }
-
+        E root = elementAt(0);
+        removeAt(0);
         return root;
     }
 
@@ -48,78 +87,206 @@ public class PriorityQueue<E extends Comparable<E>> {
         if (isEmpty()) {
             throw new NoSuchElementException("Priority queue is empty");
         }
-        return heap.get(0);
+        return elementAt(0);
+    }
+
+    /**
+     * Check if the queue holds an element equal to the given one
+     */
+    public boolean contains(E element) {
+        return indexOf(element) >= 0;
+    }
+
+    /**
+     * Remove an element from anywhere in the queue. O(log n) if the queue is indexed,
+     * otherwise the heap is searched first.
+     *
+     * @return false if the element is not in the queue
+     */
+    public boolean remove(E element) {
+        int index = indexOf(element);
+        if (index < 0) {
+            return false;
+        }
+        removeAt(index);
+        return true;
+    }
+
+    /**
+     * Move an element to its new place after its priority has changed. The given
+     * element replaces the queued one it equals. O(log n) if the queue is indexed,
+     * otherwise the heap is searched first.
+     *
+     * @return false if the element is not in the queue
+     */
+    public boolean update(E element) {
+        int index = indexOf(element);
+        if (index < 0) {
+            return false;
+        }
+        heap[index] = element;
+        if (siftUp(index) == index) {
+            siftDown(index);
+        }
+        return true;
     }
 
     /**
      * Check if queue is empty
      */
     public boolean isEmpty() {
-        return heap.isEmpty();
+        return size == 0;
     }
 
     /**
      * Get size of queue
      */
     public int size() {
-        return heap.size();
+        return size;
     }
 
     /**
      * Clear the queue
      */
     public void clear() {
-        heap.clear();
+        Arrays.fill(heap, 0, size, null);
+        if (positions != null) {
+            Arrays.fill(slots, 0, size, null);
+            positions.clear();
+        }
+        size = 0;
+    }
+
+    /**
+     * Index of the element in the heap, or -1
+     */
+    private int indexOf(E element) {
+        if (element == null) {
+            return -1;
+        }
+        if (positions != null) {
+            Position position = positions.get(element);
+            return position == null ? -1 : position.index;
+        }
+        for (int i = 0; i < size; i++) {
+            if (heap[i].equals(element)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Remove the element at an index, filling the hole with the last element
+     */
+    private void removeAt(int index) {
+        if (positions != null) {
+            positions.remove(elementAt(index));
+        }
+        int last = --size;
+        if (index != last) {
+            move(last, index);
+            if (siftUp(index) == index) {
+                siftDown(index);
+            }
+        }
+        heap[last] = null;
+        if (positions != null) {
+            slots[last] = null;
+        }
     }
 
     /**
      * Sift up to maintain heap property
+     *
+     * @return the element's new index
      */
-    private void siftUp(int index) {
+    private int siftUp(int index) {
+        E element = elementAt(index);
+        Position position = positions != null ? slots[index] : null;
         while (index > 0) {
-            int parentIndex = (index - 1) / 2;
-            if (heap.get(index).compareTo(heap.get(parentIndex)) >= 0) {
+            int parentIndex = (index - 1) / arity;
+            if (element.compareTo(elementAt(parentIndex)) >= 0) {
                 break;
             }
-            swap(index, parentIndex);
+            move(parentIndex, index);
             index = parentIndex;
         }
+        place(element, position, index);
+        return index;
     }
 
     /**
      * Sift down to maintain heap property
      */
     private void siftDown(int index) {
+        E element = elementAt(index);
+        Position position = positions != null ? slots[index] : null;
         while (true) {
-            int minIndex = index;
-            int leftChild = 2 * index + 1;
-            int rightChild = 2 * index + 2;
-
-            if (leftChild < heap.size() && 
-                heap.get(leftChild).compareTo(heap.get(minIndex)) < 0) {
-                minIndex = leftChild;
+            int firstChild = index * arity + 1;
+            if (firstChild >= size || firstChild < 0) {
+                break;
             }
-
-            if (rightChild < heap.size() && 
-                heap.get(rightChild).compareTo(heap.get(minIndex)) < 0) {
-                minIndex = rightChild;
+            int lastChild = Math.min(firstChild + arity, size);
+            int minIndex = firstChild;
+            E min = elementAt(firstChild);
+            for (int child = firstChild + 1; child < lastChild; child++) {
+                E candidate = elementAt(child);
+                if (candidate.compareTo(min) < 0) {
+                    min = candidate;
+                    minIndex = child;
+                }
             }
-
-            if (minIndex != index) {
-                swap(index, minIndex);
-                index = minIndex;
-            } else {
+            if (min.compareTo(element) >= 0) {
                 break;
             }
+            move(minIndex, index);
+            index = minIndex;
+        }
+        place(element, position, index);
+    }
+
+    /**
+     * Copy the element at {@code from} to {@code to}, keeping its position current
+     */
+    private void move(int from, int to) {
+        heap[to] = heap[from];
+        if (positions != null) {
+            Position position = slots[from];
+            position.index = to;
+            slots[to] = position;
+        }
+    }
+
+    private void place(E element, Position position, int index) {
+        heap[index] = element;
+        if (position != null) {
+            position.index = index;
+            slots[index] = position;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private E elementAt(int index) {
+        return (E) heap[index];
+    }
+
+    private void grow() {
+        int capacity = heap.length * 2;
+        if (capacity < 0) {
+            throw new IllegalStateException("Priority queue is full");
+        }
+        heap = Arrays.copyOf(heap, capacity);
+        if (slots != null) {
+            slots = Arrays.copyOf(slots, capacity);
         }
     }
 
     /**
-     * Swap two elements
+     * Where an indexed element currently sits in the heap. The position object stays
+     * with its element, so a sift updates it without another hash lookup.
      */
-    private void swap(int i, int j) {
-        E temp = heap.get(i);
-        heap.set(i, heap.get(j));
-        heap.set(j, temp);
+    private static final class Position {
+        int index;
     }
 }
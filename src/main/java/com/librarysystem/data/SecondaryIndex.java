@@ -0,0 +1,141 @@
+package com.librarysystem.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * An index of a map's values by one of their attributes, such as books by author, so
+ * the values with a given attribute can be found without scanning the whole map.
+ *
+ * The index does not watch the map: its owner passes every change on, usually through
+ * {@link SecondaryIndexes}. Values are kept in groups of equal attributes, each group an
+ * {@link OpenHashMap} from the value's key in the map to the value. The index keeps no
+ * record of its own of where each value is: a value is removed by working out its
+ * attribute again, so it must be removed before its attribute changes in place and
+ * added back after. Adding and removing a value take constant time plus the cost of
+ * finding its group, which is what {@link HashIndex} and {@link SortedIndex} differ in.
+ *
+ * All methods hold the index's lock, so values may be indexed from several threads,
+ * such as while the map is loaded in parallel. The indexes declared through one
+ * {@link SecondaryIndexes} share its lock, so a change to all of them at once is seen
+ * whole or not at all.
+ */
+public abstract class SecondaryIndex<K, V, A> {
+    final Object lock;
+    private final Function<? super V, ? extends A> attribute;
+    private int size;
+
+    /**
+     * @param lock the lock to hold while using the index, or null to use the index itself
+     */
+    SecondaryIndex(Function<? super V, ? extends A> attribute, Object lock) {
+        if (attribute == null) {
+            throw new IllegalArgumentException("Attribute function cannot be null");
+        }
+        this.attribute = attribute;
+        this.lock = lock != null ? lock : this;
+    }
+
+    /**
+     * Index a value under its current attribute
+     */
+    public void add(K key, V value) {
+        synchronized (lock) {
+            if (group(attribute.apply(value), true).put(key, value) == null) {
+                size++;
+            }
+        }
+    }
+
+    /**
+     * Stop indexing a value, which must have the attribute it was added with
+     */
+    public void remove(K key, V value) {
+        synchronized (lock) {
+            A current = attribute.apply(value);
+            OpenHashMap<K, V> group = group(current, false);
+            if (group != null && group.remove(key) != null) {
+                size--;
+                if (group.isEmpty()) {
+                    removeGroup(current);
+                }
+            }
+        }
+    }
+
+    /**
+     * Values with the given attribute, in no particular order
+     */
+    public List<V> get(A attribute) {
+        synchronized (lock) {
+            OpenHashMap<K, V> group = group(attribute, false);
+            List<V> result = new ArrayList<>(group != null ? group.size() : 0);
+            if (group != null) {
+                group.forEach((key, value) -> result.add(value));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Number of values with the given attribute
+     */
+    public int count(A attribute) {
+        synchronized (lock) {
+            OpenHashMap<K, V> group = group(attribute, false);
+            return group != null ? group.size() : 0;
+        }
+    }
+
+    /**
+     * The distinct attributes of the indexed values, for queries that have to test each
+     * attribute, such as a substring search. There are usually far fewer of them than
+     * values.
+     */
+    public List<A> attributes() {
+        synchronized (lock) {
+            List<A> result = new ArrayList<>();
+            addAttributes(result);
+            return result;
+        }
+    }
+
+    /**
+     * Number of values indexed
+     */
+    public int size() {
+        synchronized (lock) {
+            return size;
+        }
+    }
+
+    /**
+     * Remove every value from the index
+     */
+    public void clear() {
+        synchronized (lock) {
+            size = 0;
+            clearGroups();
+        }
+    }
+
+    /**
+     * Find the group for an attribute, adding an empty one if {@code create} is true
+     *
+     * @return the group, or null if there is none and {@code create} is false
+     */
+    abstract OpenHashMap<K, V> group(A attribute, boolean create);
+
+    /**
+     * Drop the group for an attribute once its last value is removed
+     */
+    abstract void removeGroup(A attribute);
+
+    /**
+     * Add the attribute of every group to {@code result}
+     */
+    abstract void addAttributes(List<A> result);
+
+    abstract void clearGroups();
+}
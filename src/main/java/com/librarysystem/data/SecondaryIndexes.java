@@ -0,0 +1,102 @@
+package com.librarysystem.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * The secondary indexes declared over one map. The map's owner declares the indexes it
+ * wants up front, then passes each put, remove and in-place change to the map here, and
+ * every index is kept up to date. Queries go to the index that suits them: a
+ * {@link HashIndex} for an exact attribute and a {@link SortedIndex} for a range.
+ *
+ * The indexes find a value's old place from the value itself, so puts and removes are
+ * given the record the map held, and changes to a record in place are made through
+ * {@link #update}.
+ *
+ * The indexes all use this object as their lock, and each method here holds it
+ * throughout, so a query on any of them never sees a value half moved by an update,
+ * missing from one index or in two places at once.
+ */
+public class SecondaryIndexes<K, V> {
+    private final List<SecondaryIndex<K, V, ?>> indexes;
+
+    public SecondaryIndexes() {
+        this.indexes = new ArrayList<>();
+    }
+
+    /**
+     * Declare an index for looking values up by an exact attribute
+     *
+     * @throws IllegalStateException if values have already been put
+     */
+    public <A> HashIndex<K, V, A> addHashIndex(Function<? super V, ? extends A> attribute) {
+        return declare(new HashIndex<>(attribute, this));
+    }
+
+    /**
+     * Declare an index for looking values up by a range of attributes
+     *
+     * @throws IllegalStateException if values have already been put
+     */
+    public <A extends Comparable<? super A>> SortedIndex<K, V, A> addSortedIndex(
+            Function<? super V, ? extends A> attribute) {
+        return declare(new SortedIndex<>(attribute, this));
+    }
+
+    /**
+     * Index a value that was put in the map
+     *
+     * @param old the value the map held for the key before, or null
+     */
+    public synchronized void put(K key, V old, V value) {
+        if (old != null) {
+            remove(key, old);
+        }
+        for (SecondaryIndex<K, V, ?> index : indexes) {
+            index.add(key, value);
+        }
+    }
+
+    /**
+     * Stop indexing a value that was removed from the map
+     */
+    public synchronized void remove(K key, V old) {
+        for (SecondaryIndex<K, V, ?> index : indexes) {
+            index.remove(key, old);
+        }
+    }
+
+    /**
+     * Change a value in place, moving it in every index whose attribute the change
+     * affects
+     */
+    public synchronized void update(K key, V value, Consumer<? super V> change) {
+        remove(key, value);
+        try {
+            change.accept(value);
+        } finally {
+            for (SecondaryIndex<K, V, ?> index : indexes) {
+                index.add(key, value);
+            }
+        }
+    }
+
+    /**
+     * Remove every value from every index, keeping the declarations
+     */
+    public synchronized void clear() {
+        for (SecondaryIndex<K, V, ?> index : indexes) {
+            index.clear();
+        }
+    }
+
+    private synchronized <I extends SecondaryIndex<K, V, ?>> I declare(I index) {
+        if (!indexes.isEmpty() && indexes.get(0).size() > 0) {
+            throw new IllegalStateException("Indexes must be declared before values are put");
+        }
+        indexes.add(index);
+        return index;
+    }
+}
@@ -0,0 +1,165 @@
+package com.librarysystem.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A secondary index that keeps its groups in attribute order, for range queries such as
+ * books with at least one copy available. The groups are linked in a skip list, so
+ * finding a group takes O(log g) time for g distinct attributes, and a range is read by
+ * walking from its first group. Attributes must not be null.
+ */
+public class SortedIndex<K, V, A extends Comparable<? super A>> extends SecondaryIndex<K, V, A> {
+    private static final int MAX_HEIGHT = 32;
+
+    private final Group<K, V, A> head;  // Sentinel before the lowest attribute
+    private int height;  // Levels in use, at least 1
+    private int seed;  // Xorshift state for choosing group heights
+
+    /**
+     * Create an index of values by the attribute the function returns
+     */
+    public SortedIndex(Function<? super V, ? extends A> attribute) {
+        this(attribute, null);
+    }
+
+    /**
+     * Create an index that holds the given lock, shared with the other indexes of a map
+     */
+    SortedIndex(Function<? super V, ? extends A> attribute, Object lock) {
+        super(attribute, lock);
+        this.head = new Group<>(null, MAX_HEIGHT);
+        this.height = 1;
+        this.seed = 0x9E3779B9;
+    }
+
+    /**
+     * Values whose attribute is at least {@code from} and less than {@code to}, lowest
+     * attribute first, and in no particular order within one attribute
+     *
+     * @param from lowest attribute to include, or null for no lower bound
+     * @param to attribute to stop before, or null for no upper bound
+     */
+    public List<V> range(A from, A to) {
+        synchronized (lock) {
+            List<V> result = new ArrayList<>();
+            Group<K, V, A> group = from == null ? head.next[0] : findPredecessors(from, null).next[0];
+            while (group != null && (to == null || group.attribute.compareTo(to) < 0)) {
+                group.values.forEach((key, value) -> result.add(value));
+                group = group.next[0];
+            }
+            return result;
+        }
+    }
+
+    @Override
+    OpenHashMap<K, V> group(A attribute, boolean create) {
+        if (attribute == null) {
+            throw new IllegalArgumentException("Sorted index attribute cannot be null");
+        }
+        Group<K, V, A>[] predecessors = create ? newLinks(MAX_HEIGHT) : null;
+        Group<K, V, A> next = findPredecessors(attribute, predecessors).next[0];
+        if (next != null && next.attribute.compareTo(attribute) == 0) {
+            return next.values;
+        }
+        if (!create) {
+            return null;
+        }
+
+        int groupHeight = randomHeight();
+        for (int level = height; level < groupHeight; level++) {
+            predecessors[level] = head;
+        }
+        height = Math.max(height, groupHeight);
+        Group<K, V, A> group = new Group<>(attribute, groupHeight);
+        for (int level = 0; level < groupHeight; level++) {
+            group.next[level] = predecessors[level].next[level];
+            predecessors[level].next[level] = group;
+        }
+        return group.values;
+    }
+
+    @Override
+    void removeGroup(A attribute) {
+        Group<K, V, A>[] predecessors = newLinks(MAX_HEIGHT);
+        Group<K, V, A> group = findPredecessors(attribute, predecessors).next[0];
+        if (group == null || group.attribute.compareTo(attribute) != 0) {
+            return;
+        }
+        for (int level = 0; level < group.next.length; level++) {
+            predecessors[level].next[level] = group.next[level];
+        }
+        while (height > 1 && head.next[height - 1] == null) {
+            height--;
+        }
+    }
+
+    @Override
+    void addAttributes(List<A> result) {
+        for (Group<K, V, A> group = head.next[0]; group != null; group = group.next[0]) {
+            result.add(group.attribute);
+        }
+    }
+
+    @Override
+    void clearGroups() {
+        Arrays.fill(head.next, null);
+        height = 1;
+    }
+
+    /**
+     * Find the last group on each level whose attribute is below {@code attribute},
+     * recording them in {@code predecessors} if it is not null
+     *
+     * @return the last such group on the bottom level, or the head if there is none
+     */
+    private Group<K, V, A> findPredecessors(A attribute, Group<K, V, A>[] predecessors) {
+        Group<K, V, A> group = head;
+        for (int level = height - 1; level >= 0; level--) {
+            while (group.next[level] != null && group.next[level].attribute.compareTo(attribute) < 0) {
+                group = group.next[level];
+            }
+            if (predecessors != null) {
+                predecessors[level] = group;
+            }
+        }
+        return group;
+    }
+
+    /**
+     * Choose a height for a new group: each level above the first with probability 1/2
+     */
+    private int randomHeight() {
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        return Math.min(Integer.numberOfTrailingZeros(seed) + 1, MAX_HEIGHT);
+    }
+
+    /**
+     * Allocate an array of links to groups. Java cannot create an array of a generic
+     * type; the array only ever holds groups of this index, so the cast is safe.
+     */
+    @SuppressWarnings("unchecked")
+    private static <K, V, A> Group<K, V, A>[] newLinks(int height) {
+        return (Group<K, V, A>[]) new Group<?, ?, ?>[height];
+    }
+
+    /**
+     * The values with one attribute, by key, linked into the skip list on its lowest
+     * {@code next.length} levels
+     */
+    private static final class Group<K, V, A> {
+        final A attribute;
+        final OpenHashMap<K, V> values;
+        final Group<K, V, A>[] next;
+
+        Group(A attribute, int height) {
+            this.attribute = attribute;
+            this.values = new OpenHashMap<>();
+            this.next = newLinks(height);
+        }
+    }
+}
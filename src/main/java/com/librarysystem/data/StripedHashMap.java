@@ -0,0 +1,656 @@
+package com.librarysystem.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A generic HashMap that can be used from many threads at once.
+ * The table is split into stripes, each a small chained hash table with its own lock.
+ * Changes lock only the stripe that holds the key, so threads working on different keys
+ * rarely wait for each other, and a stripe that fills up is resized on its own.
+ * Lookups take no lock at all: chains are only ever changed in ways that leave them
+ * readable, and a lookup that overlaps a resize of its stripe simply tries again.
+ *
+ * Iteration is weakly consistent: it never fails and never returns a key twice, but may
+ * or may not see changes made while it runs. Null keys and values are not allowed, so
+ * that a null from {@link #get} always means the key is absent.
+ * Has the same methods as {@link HashMap}, plus atomic {@link #putIfAbsent},
+ * {@link #computeIfAbsent} and {@link #compute}.
+ */
+public class StripedHashMap<K, V> {
+    private static final int DEFAULT_STRIPES = 16;
+    private static final int MAXIMUM_STRIPES = 1 << 16;
+    private static final int INITIAL_STRIPE_CAPACITY = 4;
+    private static final int MAXIMUM_STRIPE_CAPACITY = 1 << 30;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private final Stripe<K, V>[] stripes;
+    private final int stripeShift;
+    private volatile Collection<V> valuesView;
+    private volatile Set<K> keysView;
+
+    public StripedHashMap() {
+        this(0, DEFAULT_STRIPES);
+    }
+
+    /**
+     * Create a map big enough to hold {@code expectedSize} entries without resizing
+     */
+    public StripedHashMap(int expectedSize) {
+        this(expectedSize, DEFAULT_STRIPES);
+    }
+
+    /**
+     * Create a map big enough to hold {@code expectedSize} entries without resizing,
+     * split into at least {@code stripeCount} independently locked stripes. About one
+     * stripe per thread that changes the map at the same time is enough.
+     */
+    @SuppressWarnings("unchecked")
+    public StripedHashMap(int expectedSize, int stripeCount) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Expected size cannot be negative");
+        }
+        if (stripeCount < 1) {
+            throw new IllegalArgumentException("Stripe count must be at least 1");
+        }
+        int count = 1;
+        int bits = 0;
+        while (count < stripeCount && count < MAXIMUM_STRIPES) {
+            count *= 2;
+            bits++;
+        }
+        this.stripes = (Stripe<K, V>[]) new Stripe<?, ?>[count];
+        this.stripeShift = Integer.SIZE - bits;
+        int perStripe = (int) Math.min(Integer.MAX_VALUE, ((long) expectedSize + count - 1) / count);
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe<>(capacityFor(perStripe));
+        }
+    }
+
+    /**
+     * Compute hash code for key. The high bits pick the stripe and the low bits the
+     * bucket within it, so the two never depend on the same bits.
+     */
+    private static int hash(Object key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key cannot be null");
+        }
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private Stripe<K, V> stripeFor(int hash) {
+        // Shifting as a long lets a single stripe use a shift of 32
+        return stripes[(int) ((hash & 0xFFFFFFFFL) >>> stripeShift)];
+    }
+
+    /**
+     * Put key-value pair into map
+     */
+    public V put(K key, V value) {
+        int h = hash(key);
+        return stripeFor(h).put(key, h, requireValue(value), false);
+    }
+
+    /**
+     * Put key-value pair into map unless the key is already there
+     *
+     * @return the value already in the map, or null if this one was added
+     */
+    public V putIfAbsent(K key, V value) {
+        int h = hash(key);
+        return stripeFor(h).put(key, h, requireValue(value), true);
+    }
+
+    /**
+     * Get value by key, without locking
+     */
+    public V get(K key) {
+        int h = hash(key);
+        return stripeFor(h).get(key, h);
+    }
+
+    /**
+     * Remove key-value pair
+     */
+    public V remove(K key) {
+        int h = hash(key);
+        return stripeFor(h).remove(key, h);
+    }
+
+    /**
+     * Check if key exists
+     */
+    public boolean containsKey(K key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Get the value for a key, computing and adding it first if the key is absent. The
+     * function runs at most once per call, while the key's stripe is locked, so it must
+     * be quick and must not use this map. If it returns null nothing is added.
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        int h = hash(key);
+        Stripe<K, V> stripe = stripeFor(h);
+        V value = stripe.get(key, h);
+        if (value != null) {
+            return value;
+        }
+        return stripe.compute(key, h, (k, old) -> old != null ? old : mappingFunction.apply(k));
+    }
+
+    /**
+     * Replace the value for a key with one computed from the current value (null if
+     * absent), atomically. Returning null removes the key. The function runs while the
+     * key's stripe is locked, so it must be quick and must not use this map.
+     *
+     * @return the new value, or null if the key is now absent
+     */
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        int h = hash(key);
+        return stripeFor(h).compute(key, h, remappingFunction);
+    }
+
+    /**
+     * Get a copy of all values. {@link #valuesView()} and {@link #cursor()} scan the map
+     * without copying it.
+     */
+    public Collection<V> values() {
+        List<V> values = new ArrayList<>();
+        forEach((key, value) -> values.add(value));
+        return values;
+    }
+
+    /**
+     * Get a copy of all keys. {@link #keysView()} and {@link #cursor()} scan the map
+     * without copying it.
+     */
+    public Set<K> keySet() {
+        Set<K> keys = new HashSet<>();
+        forEach((key, value) -> keys.add(key));
+        return keys;
+    }
+
+    /**
+     * Perform an action on every key-value pair, stripe by stripe, without locking.
+     * The map may be changed meanwhile, by the action or by other threads.
+     */
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        for (Stripe<K, V> stripe : stripes) {
+            AtomicReferenceArray<Entry<K, V>> table = stripe.table;
+            for (int i = 0; i < table.length(); i++) {
+                for (Entry<K, V> entry = table.get(i); entry != null; entry = entry.next) {
+                    action.accept(entry.key, entry.value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get a cursor positioned before the first entry. Scanning with it allocates nothing
+     * and takes no locks. Like {@link #forEach}, a scan is weakly consistent, so the map
+     * may be changed while it runs.
+     */
+    public MapCursor<K, V> cursor() {
+        return new StripeCursor();
+    }
+
+    /**
+     * Get a read-only live view of the values. Iteration is weakly consistent. Its
+     * streams split by stripe, then by bucket range within a stripe, so
+     * {@code valuesView().parallelStream()} scans a big map with fork/join.
+     */
+    public Collection<V> valuesView() {
+        if (valuesView == null) {
+            valuesView = CursorViews.values(this::cursor, () -> new StripeSpliterator<>(false), this::size);
+        }
+        return valuesView;
+    }
+
+    /**
+     * Get a read-only live view of the keys. Iteration is weakly consistent, and its
+     * streams split like those of {@link #valuesView()}.
+     */
+    @SuppressWarnings("unchecked")
+    public Set<K> keysView() {
+        if (keysView == null) {
+            keysView = CursorViews.keys(this::cursor, () -> new StripeSpliterator<>(true), this::size,
+                    key -> key != null && containsKey((K) key));
+        }
+        return keysView;
+    }
+
+    /**
+     * Get size. While other threads are changing the map this is only an estimate.
+     */
+    public int size() {
+        long size = 0;
+        for (Stripe<K, V> stripe : stripes) {
+            size += stripe.count;
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Check if empty
+     */
+    public boolean isEmpty() {
+        for (Stripe<K, V> stripe : stripes) {
+            if (stripe.count != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Clear the map, one stripe at a time
+     */
+    public void clear() {
+        for (Stripe<K, V> stripe : stripes) {
+            stripe.clear();
+        }
+    }
+
+    /**
+     * Grow the stripes, if needed, so that {@code expectedSize} evenly spread entries fit
+     * without another resize
+     */
+    public void ensureCapacity(int expectedSize) {
+        int perStripe = (int) Math.min(Integer.MAX_VALUE, ((long) expectedSize + stripes.length - 1) / stripes.length);
+        int capacity = capacityFor(perStripe);
+        for (Stripe<K, V> stripe : stripes) {
+            stripe.ensureCapacity(capacity);
+        }
+    }
+
+    /**
+     * Smallest power-of-two table that holds {@code expectedSize} entries under the load factor
+     */
+    private static int capacityFor(int expectedSize) {
+        int capacity = INITIAL_STRIPE_CAPACITY;
+        while (capacity < MAXIMUM_STRIPE_CAPACITY && capacity * LOAD_FACTOR < expectedSize) {
+            capacity *= 2;
+        }
+        return capacity;
+    }
+
+    private static <V> V requireValue(V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+        return value;
+    }
+
+    /**
+     * Walks the stripes in order, reading each stripe's table as it is when reached
+     */
+    private class StripeCursor implements MapCursor<K, V> {
+        private int stripe;
+        private AtomicReferenceArray<Entry<K, V>> table;
+        private int bucket;
+        private Entry<K, V> current;
+
+        StripeCursor() {
+            reset();
+        }
+
+        @Override
+        public boolean next() {
+            Entry<K, V> entry = current == null ? null : current.next;
+            while (entry == null) {
+                if (bucket == table.length()) {
+                    if (stripe == stripes.length - 1) {
+                        current = null;
+                        return false;
+                    }
+                    stripe++;
+                    table = stripes[stripe].table;
+                    bucket = 0;
+                } else {
+                    entry = table.get(bucket++);
+                }
+            }
+            current = entry;
+            return true;
+        }
+
+        @Override
+        public K key() {
+            return entry().key;
+        }
+
+        @Override
+        public V value() {
+            return entry().value;
+        }
+
+        @Override
+        public void reset() {
+            stripe = 0;
+            table = stripes[0].table;
+            bucket = 0;
+            current = null;
+        }
+
+        private Entry<K, V> entry() {
+            if (current == null) {
+                throw new IllegalStateException("Cursor is not on an entry");
+            }
+            return current;
+        }
+    }
+
+    /**
+     * Walks a range of stripes. Splitting halves the range until it holds one stripe,
+     * then reads that stripe's table once and halves its bucket range. Like the cursor,
+     * it is weakly consistent and takes no locks.
+     */
+    private class StripeSpliterator<T> implements Spliterator<T> {
+        private final boolean keys;
+        private int stripe;
+        private final int stripeFence;
+        private AtomicReferenceArray<Entry<K, V>> table;
+        private int bucket;
+        private int bucketFence;
+        private Entry<K, V> current;
+        private long estimate;
+
+        StripeSpliterator(boolean keys) {
+            this(keys, 0, stripes.length, size());
+        }
+
+        private StripeSpliterator(boolean keys, int stripe, int stripeFence, long estimate) {
+            this.keys = keys;
+            this.stripe = stripe;
+            this.stripeFence = stripeFence;
+            this.estimate = estimate;
+        }
+
+        private StripeSpliterator(StripeSpliterator<T> parent, int bucket, int bucketFence) {
+            this.keys = parent.keys;
+            this.stripe = parent.stripe;
+            this.stripeFence = parent.stripe + 1;
+            this.table = parent.table;
+            this.bucket = bucket;
+            this.bucketFence = bucketFence;
+            this.estimate = parent.estimate;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            Entry<K, V> entry = current == null ? null : current.next;
+            while (entry == null) {
+                if (table == null || bucket == bucketFence) {
+                    if (table != null) {
+                        stripe++;
+                        table = null;
+                    }
+                    if (stripe >= stripeFence) {
+                        current = null;
+                        return false;
+                    }
+                    bind();
+                } else {
+                    entry = table.get(bucket++);
+                }
+            }
+            current = entry;
+            action.accept(item(entry));
+            return true;
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            if (current != null) {
+                return null;
+            }
+            if (table == null && stripeFence - stripe > 1) {
+                int mid = (stripe + stripeFence) >>> 1;
+                estimate >>>= 1;
+                Spliterator<T> prefix = new StripeSpliterator<>(keys, stripe, mid, estimate);
+                stripe = mid;
+                return prefix;
+            }
+            if (table == null) {
+                if (stripe >= stripeFence) {
+                    return null;
+                }
+                bind();
+            }
+            int mid = (bucket + bucketFence) >>> 1;
+            if (bucket >= mid) {
+                return null;
+            }
+            estimate >>>= 1;
+            Spliterator<T> prefix = new StripeSpliterator<>(this, bucket, mid);
+            bucket = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return estimate;
+        }
+
+        @Override
+        public int characteristics() {
+            return keys ? CONCURRENT | NONNULL | DISTINCT : CONCURRENT | NONNULL;
+        }
+
+        /**
+         * Start on the stripe at {@code stripe}, reading its table as it is now
+         */
+        private void bind() {
+            table = stripes[stripe].table;
+            bucket = 0;
+            bucketFence = table.length();
+        }
+
+        @SuppressWarnings("unchecked")
+        private T item(Entry<K, V> entry) {
+            return keys ? (T) entry.key : (T) entry.value;
+        }
+    }
+
+    /**
+     * One independently locked hash table. Readers rely on three rules kept by the
+     * writers: a new entry is only published by a volatile write of the bucket that
+     * points to it, an unlinked entry keeps its own next pointer, and a resize copies
+     * entries into a fresh table instead of relinking the ones readers may be walking.
+     */
+    private static final class Stripe<K, V> {
+        private final ReentrantLock lock;
+        volatile AtomicReferenceArray<Entry<K, V>> table;
+        volatile int count;
+        private int threshold;
+
+        Stripe(int capacity) {
+            this.lock = new ReentrantLock();
+            this.table = new AtomicReferenceArray<>(capacity);
+            this.threshold = (int) (capacity * LOAD_FACTOR);
+        }
+
+        V get(Object key, int hash) {
+            while (true) {
+                AtomicReferenceArray<Entry<K, V>> current = table;
+                Entry<K, V> entry = find(current, key, hash);
+                V value = entry == null ? null : entry.value;
+                // A resize may have copied the entry and a writer may have changed the copy
+                if (current == table) {
+                    return value;
+                }
+            }
+        }
+
+        V put(K key, int hash, V value, boolean onlyIfAbsent) {
+            lock.lock();
+            try {
+                AtomicReferenceArray<Entry<K, V>> current = table;
+                Entry<K, V> entry = find(current, key, hash);
+                if (entry != null) {
+                    V oldValue = entry.value;
+                    if (!onlyIfAbsent) {
+                        entry.value = value;
+                    }
+                    return oldValue;
+                }
+                insert(key, hash, value);
+                return null;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        V remove(Object key, int hash) {
+            lock.lock();
+            try {
+                AtomicReferenceArray<Entry<K, V>> current = table;
+                int index = hash & (current.length() - 1);
+                Entry<K, V> prev = null;
+                for (Entry<K, V> entry = current.get(index); entry != null; entry = entry.next) {
+                    if (entry.hash == hash && entry.key.equals(key)) {
+                        unlink(current, index, prev, entry);
+                        return entry.value;
+                    }
+                    prev = entry;
+                }
+                return null;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        V compute(K key, int hash, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+            lock.lock();
+            try {
+                AtomicReferenceArray<Entry<K, V>> current = table;
+                int index = hash & (current.length() - 1);
+                Entry<K, V> prev = null;
+                Entry<K, V> entry = current.get(index);
+                while (entry != null && !(entry.hash == hash && entry.key.equals(key))) {
+                    prev = entry;
+                    entry = entry.next;
+                }
+
+                V value = remappingFunction.apply(key, entry == null ? null : entry.value);
+                if (value == null) {
+                    if (entry != null) {
+                        unlink(current, index, prev, entry);
+                    }
+                } else if (entry != null) {
+                    entry.value = value;
+                } else {
+                    insert(key, hash, value);
+                }
+                return value;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void clear() {
+            lock.lock();
+            try {
+                AtomicReferenceArray<Entry<K, V>> current = table;
+                for (int i = 0; i < current.length(); i++) {
+                    current.set(i, null);
+                }
+                count = 0;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void ensureCapacity(int capacity) {
+            lock.lock();
+            try {
+                if (capacity > table.length()) {
+                    rehash(capacity);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Add a key known not to be in the stripe. The caller holds the lock.
+         */
+        private void insert(K key, int hash, V value) {
+            if (count >= threshold && table.length() < MAXIMUM_STRIPE_CAPACITY) {
+                rehash(table.length() * 2);
+            }
+            AtomicReferenceArray<Entry<K, V>> current = table;
+            int index = hash & (current.length() - 1);
+            current.set(index, new Entry<>(hash, key, value, current.get(index)));
+            count = count + 1;
+        }
+
+        /**
+         * Unlink an entry. Its own next pointer is left alone, so a reader standing on it
+         * can still finish walking the chain. The caller holds the lock.
+         */
+        private void unlink(AtomicReferenceArray<Entry<K, V>> current, int index, Entry<K, V> prev,
+                            Entry<K, V> entry) {
+            if (prev == null) {
+                current.set(index, entry.next);
+            } else {
+                prev.next = entry.next;
+            }
+            count = count - 1;
+        }
+
+        /**
+         * Copy every entry into a new table and publish it. The caller holds the lock.
+         */
+        private void rehash(int capacity) {
+            AtomicReferenceArray<Entry<K, V>> current = table;
+            AtomicReferenceArray<Entry<K, V>> resized = new AtomicReferenceArray<>(capacity);
+            for (int i = 0; i < current.length(); i++) {
+                for (Entry<K, V> entry = current.get(i); entry != null; entry = entry.next) {
+                    int index = entry.hash & (capacity - 1);
+                    resized.lazySet(index, new Entry<>(entry.hash, entry.key, entry.value, resized.get(index)));
+                }
+            }
+            table = resized;  // The volatile write publishes every copied entry
+            threshold = (int) (capacity * LOAD_FACTOR);
+        }
+
+        private static <K, V> Entry<K, V> find(AtomicReferenceArray<Entry<K, V>> table, Object key, int hash) {
+            for (Entry<K, V> entry = table.get(hash & (table.length() - 1)); entry != null; entry = entry.next) {
+                if (entry.hash == hash && entry.key.equals(key)) {
+                    return entry;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Inner class for hash table entries
+     */
+    private static final class Entry<K, V> {
+        final int hash;
+        final K key;
+        volatile V value;
+        volatile Entry<K, V> next;
+
+        Entry(int hash, K key, V value, Entry<K, V> next) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.librarysystem.data;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A hierarchical timing wheel: elements are scheduled for a tick (such as an epoch day)
+ * and handed back, in tick order, as the wheel is advanced past it.
+ *
+ * The wheel has four levels of 64 slots. Level 0 holds timers due within the current
+ * block of 64 ticks, one slot per tick; each higher level holds timers in later blocks
+ * 64 times as long. Scheduling and cancelling a timer take constant time. When the
+ * current tick enters a new block, that block's slot on the level above is emptied
+ * into the level below, so each timer is moved at most once per level before it fires.
+ * Timers more than about 16 million ticks ahead wait in an overflow list.
+ *
+ * Advancing costs a constant amount per tick passed plus the timers that fire, so
+ * ticks should be coarse: the library advances it once a day.
+ */
+public class TimingWheel<E> {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int LEVELS = 4;
+    private static final Comparator<Timer<?>> BY_TICK = Comparator.comparingLong(timer -> timer.tick);
+
+    private final List<List<LinkedList<Timer<E>>>> wheel;  // [level][slot]
+    private LinkedList<Timer<E>> overflow;  // Beyond the top level
+    private LinkedList<Timer<E>> due;  // At or before the current tick, not yet fired, in tick order
+    private long current;
+    private int size;
+
+    /**
+     * Create a wheel whose current tick is {@code startTick}. Timers scheduled for that
+     * tick or earlier fire on the next {@link #advance}.
+     */
+    public TimingWheel(long startTick) {
+        this.wheel = new ArrayList<>(LEVELS);
+        for (int level = 0; level < LEVELS; level++) {
+            List<LinkedList<Timer<E>>> slots = new ArrayList<>(SLOTS);
+            for (int slot = 0; slot < SLOTS; slot++) {
+                slots.add(new LinkedList<>());
+            }
+            wheel.add(slots);
+        }
+        this.overflow = new LinkedList<>();
+        this.due = new LinkedList<>();
+        this.current = startTick;
+    }
+
+    /**
+     * Schedule an element to fire when the wheel reaches {@code tick}
+     *
+     * @return handle for cancelling the timer
+     */
+    public Timer<E> schedule(E element, long tick) {
+        Timer<E> timer = new Timer<>(element, tick);
+        place(timer);
+        size++;
+        return timer;
+    }
+
+    /**
+     * Cancel a timer that has not fired yet
+     *
+     * @return false if the timer already fired or was cancelled
+     */
+    public boolean cancel(Timer<E> timer) {
+        if (timer == null || timer.list == null) {
+            return false;
+        }
+        timer.list.remove(timer.node);
+        timer.list = null;
+        timer.node = null;
+        size--;
+        return true;
+    }
+
+    /**
+     * Move the current tick forward to {@code tick}, passing each element whose timer is
+     * due to {@code action}, earliest tick first; timers for the same tick fire in the
+     * order they were scheduled. While an element is handed over, {@link #currentTick()}
+     * is the tick being processed, and the action may schedule or cancel timers. A timer
+     * an action schedules for a tick already reached fires before the wheel moves on.
+     * Moving to an earlier tick only fires timers already due.
+     */
+    public void advance(long tick, Consumer<? super E> action) {
+        fireDue(action);
+        while (current < tick) {
+            current++;
+            cascade();
+            List<LinkedList<Timer<E>>> slots = wheel.get(0);
+            int index = (int) (current & (SLOTS - 1));
+            LinkedList<Timer<E>> slot = slots.get(index);
+            if (!slot.isEmpty()) {
+                slots.set(index, new LinkedList<>());
+                fire(slot, action);
+            }
+            fireDue(action);
+        }
+    }
+
+    /**
+     * The latest tick the wheel has been advanced to
+     */
+    public long currentTick() {
+        return current;
+    }
+
+    /**
+     * Number of timers that have not fired or been cancelled
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Check if no timers are pending
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Put a timer in the list it belongs in for the current tick
+     */
+    private void place(Timer<E> timer) {
+        if (timer.tick <= current) {
+            // Timers scheduled for ticks already reached can come in any order
+            timer.list = due;
+            timer.node = due.addSorted(timer, BY_TICK);
+            return;
+        }
+
+        // The highest group of slot bits in which the tick differs from the current
+        // tick picks the level; within it the tick's own bits pick the slot
+        long diff = timer.tick ^ current;
+        int level = (Long.SIZE - 1 - Long.numberOfLeadingZeros(diff)) / SLOT_BITS;
+        LinkedList<Timer<E>> list = level < LEVELS
+                ? wheel.get(level).get((int) ((timer.tick >>> (level * SLOT_BITS)) & (SLOTS - 1)))
+                : overflow;
+        timer.list = list;
+        timer.node = list.add(timer);
+    }
+
+    /**
+     * On entering a new block, spread the timers for it from the levels above into the
+     * levels below, highest level first
+     */
+    private void cascade() {
+        int top = 0;
+        while (top < LEVELS && (current & ((1L << ((top + 1) * SLOT_BITS)) - 1)) == 0) {
+            top++;
+        }
+        if (top == LEVELS) {
+            LinkedList<Timer<E>> pending = overflow;
+            overflow = new LinkedList<>();
+            replace(pending);
+            top = LEVELS - 1;
+        }
+        for (int level = top; level >= 1; level--) {
+            List<LinkedList<Timer<E>>> slots = wheel.get(level);
+            int index = (int) ((current >>> (level * SLOT_BITS)) & (SLOTS - 1));
+            LinkedList<Timer<E>> slot = slots.get(index);
+            if (!slot.isEmpty()) {
+                slots.set(index, new LinkedList<>());
+                replace(slot);
+            }
+        }
+    }
+
+    private void replace(LinkedList<Timer<E>> timers) {
+        for (Timer<E> timer : timers) {
+            place(timer);
+        }
+    }
+
+    /**
+     * Fire timers due at or before the current tick, including any the actions schedule
+     */
+    private void fireDue(Consumer<? super E> action) {
+        while (!due.isEmpty()) {
+            LinkedList<Timer<E>> timers = due;
+            due = new LinkedList<>();
+            fire(timers, action);
+        }
+    }
+
+    private void fire(LinkedList<Timer<E>> timers, Consumer<? super E> action) {
+        for (Timer<E> timer : timers) {
+            // Skip timers an earlier action in this batch cancelled
+            if (timer.list == timers) {
+                timer.list = null;
+                timer.node = null;
+                size--;
+                action.accept(timer.element);
+            }
+        }
+    }
+
+    /**
+     * A scheduled element, handed out by {@link #schedule} as a handle for cancelling it
+     */
+    public static final class Timer<E> {
+        private final E element;
+        private final long tick;
+        private LinkedList<Timer<E>> list;  // List holding the timer; null once fired or cancelled
+        private LinkedList.Node<Timer<E>> node;
+
+        private Timer(E element, long tick) {
+            this.element = element;
+            this.tick = tick;
+        }
+
+        /**
+         * Get the scheduled element
+         */
+        public E getElement() {
+            return element;
+        }
+
+        /**
+         * Get the tick the timer fires at
+         */
+        public long getTick() {
+            return tick;
+        }
+
+        /**
+         * Check if the timer has neither fired nor been cancelled
+         */
+        public boolean isPending() {
+            return list != null;
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.librarysystem.gui;
 
 import com.librarysystem.model.Book;
+import com.librarysystem.model.Checkout;
+import com.librarysystem.model.Member;
 import com.librarysystem.service.LibraryService;
 
 import javax.swing.BorderFactory;
@@ -19,12 +21,15 @@ import javax.swing.table.DefaultTableModel;
 import java.awt.BorderLayout;
 import java.awt.FlowLayout;
 import java.awt.GridLayout;
+import java.time.format.DateTimeFormatter;
 import java.util.List;
 
 /**
  * Simple Swing panel for viewing and managing books.
  */
 public class BooksPanel extends JPanel {
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("MMM d, yyyy");
+
     private final LibraryService libraryService;
     private final DefaultTableModel tableModel;
     private final JTable bookTable;
@@ -183,9 +188,25 @@ public class BooksPanel extends JPanel {
                 selected.getTotalCopies(),
                 selected.getAvailableCopies()
         );
+        List<Checkout> checkouts = libraryService.getBookCheckouts(selected.getIsbn());
+        if (!checkouts.isEmpty()) {
+            StringBuilder borrowers = new StringBuilder(message).append(String.format("%n%nChecked Out By:"));
+            for (Checkout checkout : checkouts) {
+                borrowers.append(String.format("%n%s, due %s%s",
+                        memberSummary(checkout.getMemberId()),
+                        DATE_FORMAT.format(checkout.getDueDate()),
+                        checkout.isOverdue() ? " (overdue)" : ""));
+            }
+            message = borrowers.toString();
+        }
         JOptionPane.showMessageDialog(this, message, "Book Details", JOptionPane.INFORMATION_MESSAGE);
     }
 
+    private String memberSummary(String memberId) {
+        Member member = libraryService.getMember(memberId);
+        return member == null ? memberId : member.getName() + " (" + member.getMemberId() + ")";
+    }
+
     private Book getSelectedBook() {
         int row = bookTable.getSelectedRow();
         if (row < 0) {
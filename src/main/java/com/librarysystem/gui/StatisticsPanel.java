@@ -66,6 +66,6 @@ public class StatisticsPanel extends JPanel {
         checkedOutCopiesLabel.setText("Checked Out: " + libraryService.getTotalCheckedOutCopies());
         totalMembersLabel.setText("Total Members: " + libraryService.getTotalMembers());
         activeCheckoutsLabel.setText("Active Checkouts: " + libraryService.getTotalActiveCheckouts());
-        overdueCheckoutsLabel.setText("Overdue Checkouts: " + libraryService.getOverdueCheckouts().size());
+        overdueCheckoutsLabel.setText("Overdue Checkouts: " + libraryService.getOverdueCount());
     }
 }
@@ -0,0 +1,252 @@
+package com.librarysystem.io;
+
+import com.librarysystem.model.Book;
+import com.librarysystem.model.Checkout;
+import com.librarysystem.model.Member;
+import com.librarysystem.service.LibraryService;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Streams books, members and checkouts out to CSV or JSON-lines files.
+ *
+ * Records are read straight from the service's maps with the {@code forEach} methods and
+ * written one row at a time through a {@link ChannelWriter}, so nothing is copied or
+ * sorted first and memory use does not grow with the size of the library. Rows come
+ * out in no particular order.
+ *
+ * Book files use the same column names as {@link CatalogImporter}, so an exported
+ * catalog can be imported again.
+ *
+ * Usage: {@code java -cp out com.librarysystem.io.CatalogExporter <directory> [--format csv|jsonl]}
+ */
+public class CatalogExporter {
+
+    public enum Format {
+        /** Comma-separated values with a header row */
+        CSV("csv"),
+        /** One JSON object per line */
+        JSONL("jsonl");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    private static final String[] BOOK_COLUMNS =
+            {"isbn", "title", "author", "genre", "copies", "available"};
+    private static final String[] MEMBER_COLUMNS =
+            {"memberId", "name", "email", "phone", "status"};
+    private static final String[] CHECKOUT_COLUMNS =
+            {"checkoutId", "memberId", "isbn", "checkoutDate", "dueDate", "returnDate", "status", "daysAllowed"};
+
+    private final LibraryService libraryService;
+    private final Format format;
+    private final StringBuilder row;
+
+    public CatalogExporter(LibraryService libraryService, Format format) {
+        if (format == null) {
+            throw new IllegalArgumentException("Format cannot be null");
+        }
+        this.libraryService = libraryService;
+        this.format = format;
+        this.row = new StringBuilder(256);
+    }
+
+    /**
+     * Write every book to a file
+     *
+     * @return number of books written
+     */
+    public long exportBooks(File file) throws IOException {
+        return export(file, BOOK_COLUMNS, libraryService::forEachBook, book -> new Object[] {
+                book.getIsbn(), book.getTitle(), book.getAuthor(), book.getGenre(),
+                book.getTotalCopies(), book.getAvailableCopies()});
+    }
+
+    /**
+     * Write every member to a file
+     *
+     * @return number of members written
+     */
+    public long exportMembers(File file) throws IOException {
+        return export(file, MEMBER_COLUMNS, libraryService::forEachMember, member -> new Object[] {
+                member.getMemberId(), member.getName(), member.getEmail(), member.getPhone(),
+                member.getStatus()});
+    }
+
+    /**
+     * Write every checkout to a file: those in memory, then those moved to the history
+     * file
+     *
+     * @return number of checkouts written
+     */
+    public long exportCheckouts(File file) throws IOException {
+        Consumer<Consumer<Checkout>> allCheckouts = action -> {
+            libraryService.forEachCheckout(action);
+            libraryService.forEachArchivedCheckout(action);
+        };
+        return export(file, CHECKOUT_COLUMNS, allCheckouts, checkout -> new Object[] {
+                checkout.getCheckoutId(), checkout.getMemberId(), checkout.getIsbn(),
+                checkout.getCheckoutDate(), checkout.getDueDate(), checkout.getReturnDate(),
+                checkout.getStatus(), checkout.getDaysAllowed()});
+    }
+
+    /**
+     * Write books, members and checkouts to {@code books}, {@code members} and
+     * {@code checkouts} files in a directory, creating it if needed
+     *
+     * @return total number of rows written
+     */
+    public long exportAll(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create directory: " + directory);
+        }
+        return exportBooks(fileIn(directory, "books"))
+                + exportMembers(fileIn(directory, "members"))
+                + exportCheckouts(fileIn(directory, "checkouts"));
+    }
+
+    /**
+     * File an export of the given kind is written to by {@link #exportAll(File)}
+     */
+    public File fileIn(File directory, String name) {
+        return new File(directory, name + "." + format.getExtension());
+    }
+
+    private <T> long export(File file, String[] columns, Consumer<Consumer<T>> source,
+                            Function<T, Object[]> fields) throws IOException {
+        long[] count = {0};
+        try (ChannelWriter out = new ChannelWriter(file)) {
+            if (format == Format.CSV) {
+                row.setLength(0);
+                appendCsvRow(columns);
+                out.write(row);
+            }
+
+            try {
+                source.accept(record -> {
+                    row.setLength(0);
+                    if (format == Format.CSV) {
+                        appendCsvRow(fields.apply(record));
+                    } else {
+                        appendJsonRow(columns, fields.apply(record));
+                    }
+                    try {
+                        out.write(row);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    count[0]++;
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            out.commit();
+        }
+        return count[0];
+    }
+
+    private void appendCsvRow(Object[] values) {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                row.append(',');
+            }
+            Object value = values[i];
+            if (value == null) {
+                continue;
+            }
+            String text = value.toString();
+            if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0
+                    || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+                row.append('"').append(text.replace("\"", "\"\"")).append('"');
+            } else {
+                row.append(text);
+            }
+        }
+        row.append('\n');
+    }
+
+    private void appendJsonRow(String[] columns, Object[] values) {
+        row.append('{');
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                row.append(',');
+            }
+            row.append('"').append(columns[i]).append("\":");
+            Object value = values[i];
+            if (value == null) {
+                row.append("null");
+            } else if (value instanceof Number) {
+                row.append(value);
+            } else {
+                appendJsonString(value.toString());
+            }
+        }
+        row.append("}\n");
+    }
+
+    private void appendJsonString(String text) {
+        row.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"' -> row.append("\\\"");
+                case '\\' -> row.append("\\\\");
+                case '\n' -> row.append("\\n");
+                case '\r' -> row.append("\\r");
+                case '\t' -> row.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        row.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        row.append(c);
+                    }
+                }
+            }
+        }
+        row.append('"');
+    }
+
+    // ==================== COMMAND LINE ====================
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.out.println("Usage: java -cp out com.librarysystem.io.CatalogExporter <directory> [--format csv|jsonl]");
+            return;
+        }
+
+        LibraryService libraryService = new LibraryService();
+        try {
+            Format format = Format.CSV;
+            for (int i = 1; i < args.length; i++) {
+                if (args[i].equals("--format") && i + 1 < args.length) {
+                    format = Format.valueOf(args[++i].toUpperCase());
+                } else {
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+
+            File directory = new File(args[0]);
+            CatalogExporter exporter = new CatalogExporter(libraryService, format);
+            long start = System.nanoTime();
+            long rows = exporter.exportAll(directory);
+            double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+            System.out.printf("Exported %,d rows to %s in %.1f s - %,.0f rows/s%n",
+                    rows, directory, seconds, seconds > 0 ? rows / seconds : 0);
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error exporting data: " + e.getMessage());
+        } finally {
+            libraryService.close();
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package com.librarysystem.io;
+
+import com.librarysystem.model.Book;
+import com.librarysystem.service.LibraryService;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Streams books from a CSV or TSV file into the library.
+ *
+ * Columns are isbn, title, author, genre and copies, in that order. A header row naming
+ * the columns is optional and lets them appear in any order; genre and copies may be
+ * left out (copies defaults to 1). The file is read one record at a time, so catalogs
+ * with millions of titles can be imported without holding them all in memory.
+ *
+ * Every ISBN must be a well-formed ISBN-10 or ISBN-13 (hyphens and spaces are ignored).
+ * Records whose ISBN is already in the catalog, or appeared earlier in the file, are
+ * skipped as duplicates. Valid books are added in batches through
+ * {@link LibraryService#addBooks}, and the data file is saved once at the end, or every
+ * {@code checkpointInterval} books if set.
+ *
+ * Usage: {@code java -cp out com.librarysystem.io.CatalogImporter catalog.csv
+ * [--batch N] [--checkpoint N] [--delimiter comma|tab] [--no-checksum]}
+ */
+public class CatalogImporter {
+    private static final int DEFAULT_BATCH_SIZE = 1000;
+    private static final int MAX_REPORTED_ERRORS = 10;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int PROGRESS_INTERVAL = 100_000;
+    private static final String[] COLUMNS = {"isbn", "title", "author", "genre", "copies"};
+
+    private final LibraryService libraryService;
+    private int batchSize;
+    private int checkpointInterval;
+    private Character delimiter;
+    private boolean validateChecksum;
+    private Consumer<ImportResult> progressListener;
+
+    public CatalogImporter(LibraryService libraryService) {
+        this.libraryService = libraryService;
+        this.batchSize = DEFAULT_BATCH_SIZE;
+        this.checkpointInterval = 0;
+        this.validateChecksum = true;
+    }
+
+    // Setters
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1");
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Save the data file after every {@code checkpointInterval} imported books, so a
+     * failed import can be resumed. 0 saves only once the whole file is in.
+     */
+    public void setCheckpointInterval(int checkpointInterval) {
+        if (checkpointInterval < 0) {
+            throw new IllegalArgumentException("Checkpoint interval cannot be negative");
+        }
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    /**
+     * Field delimiter; by default a tab for {@code .tsv} files and a comma otherwise
+     */
+    public void setDelimiter(char delimiter) {
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * Whether ISBN check digits are verified, or only the length and characters
+     */
+    public void setValidateChecksum(boolean validateChecksum) {
+        this.validateChecksum = validateChecksum;
+    }
+
+    /**
+     * Called with the running totals after each batch is added
+     */
+    public void setProgressListener(Consumer<ImportResult> progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Import every book in a file
+     */
+    public ImportResult importFile(File file) throws IOException {
+        char separator = delimiter != null ? delimiter
+                : file.getName().toLowerCase().endsWith(".tsv") ? '\t' : ',';
+        Reader in = new BufferedReader(new InputStreamReader(
+                new FileInputStream(file), StandardCharsets.UTF_8), BUFFER_SIZE);
+        try (DelimitedReader reader = new DelimitedReader(in, separator)) {
+            return importRecords(reader);
+        }
+    }
+
+    /**
+     * Import every book from a reader, using a comma delimiter unless one was set
+     */
+    public ImportResult importFrom(Reader in) throws IOException {
+        try (DelimitedReader reader = new DelimitedReader(in, delimiter != null ? delimiter : ',')) {
+            return importRecords(reader);
+        }
+    }
+
+    private ImportResult importRecords(DelimitedReader reader) throws IOException {
+        ImportResult result = new ImportResult(System.nanoTime());
+        int[] columns = {0, 1, 2, 3, 4};
+        List<Book> batch = new ArrayList<>(batchSize);
+        Set<String> batchIsbns = new HashSet<>();
+        int sinceCheckpoint = 0;
+
+        String[] record;
+        boolean first = true;
+        while ((record = reader.next()) != null) {
+            if (first) {
+                first = false;
+                int[] header = parseHeader(record);
+                if (header != null) {
+                    columns = header;
+                    continue;
+                }
+            }
+
+            result.records++;
+            Book book;
+            try {
+                book = toBook(record, columns);
+            } catch (IllegalArgumentException e) {
+                result.rejected++;
+                if (result.rejected <= MAX_REPORTED_ERRORS) {
+                    System.err.println("Skipping line " + reader.getRecordLine() + ": " + e.getMessage());
+                }
+                continue;
+            }
+
+            // Books from earlier batches are already in the catalog
+            if (!batchIsbns.add(book.getIsbn()) || libraryService.getBook(book.getIsbn()) != null) {
+                result.duplicates++;
+                continue;
+            }
+
+            batch.add(book);
+            if (batch.size() == batchSize) {
+                sinceCheckpoint += addBatch(batch, batchIsbns, result);
+                if (checkpointInterval > 0 && sinceCheckpoint >= checkpointInterval) {
+                    libraryService.saveData();
+                    result.checkpoints++;
+                    sinceCheckpoint = 0;
+                }
+            }
+        }
+
+        addBatch(batch, batchIsbns, result);
+        libraryService.saveData();
+        result.finish(System.nanoTime());
+        return result;
+    }
+
+    private int addBatch(List<Book> batch, Set<String> batchIsbns, ImportResult result) {
+        int added = batch.size();
+        if (added > 0) {
+            libraryService.addBooks(batch);
+            result.imported += added;
+            batch.clear();
+            batchIsbns.clear();
+            if (progressListener != null) {
+                progressListener.accept(result);
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Work out column positions from a header row
+     *
+     * @return position of each of {@link #COLUMNS}, or null if the record is not a header
+     */
+    private static int[] parseHeader(String[] record) {
+        int[] columns = {-1, -1, -1, -1, -1};
+        for (int i = 0; i < record.length; i++) {
+            for (int column = 0; column < COLUMNS.length; column++) {
+                if (COLUMNS[column].equalsIgnoreCase(record[i].trim())) {
+                    columns[column] = i;
+                }
+            }
+        }
+        if (columns[0] < 0) {
+            return null;
+        }
+        if (columns[1] < 0 || columns[2] < 0) {
+            throw new IllegalArgumentException("Header must name isbn, title and author columns");
+        }
+        return columns;
+    }
+
+    private Book toBook(String[] record, int[] columns) {
+        String isbn = field(record, columns[0]);
+        String title = field(record, columns[1]);
+        String author = field(record, columns[2]);
+        String genre = field(record, columns[3]);
+        String copies = field(record, columns[4]);
+
+        if (isbn.isEmpty() || title.isEmpty() || author.isEmpty()) {
+            throw new IllegalArgumentException("ISBN, title and author are required");
+        }
+        if (!isValidIsbn(isbn, validateChecksum)) {
+            throw new IllegalArgumentException("Invalid ISBN: " + isbn);
+        }
+
+        int totalCopies = 1;
+        if (!copies.isEmpty()) {
+            try {
+                totalCopies = Integer.parseInt(copies);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid number of copies: " + copies);
+            }
+            if (totalCopies < 1) {
+                throw new IllegalArgumentException("Number of copies must be at least 1");
+            }
+        }
+        return new Book(isbn, title, author, genre, totalCopies);
+    }
+
+    private static String field(String[] record, int column) {
+        return column >= 0 && column < record.length ? record[column].trim() : "";
+    }
+
+    /**
+     * Check that an ISBN has 10 or 13 digits (an ISBN-10 may end in X), ignoring hyphens
+     * and spaces, and optionally that its check digit is right
+     */
+    static boolean isValidIsbn(String isbn, boolean checkDigit) {
+        StringBuilder digits = new StringBuilder(13);
+        for (int i = 0; i < isbn.length(); i++) {
+            char c = isbn.charAt(i);
+            if (c != '-' && c != ' ') {
+                digits.append(c);
+            }
+        }
+
+        int length = digits.length();
+        if (length != 10 && length != 13) {
+            return false;
+        }
+        int sum = 0;
+        for (int i = 0; i < length; i++) {
+            char c = digits.charAt(i);
+            int value;
+            if (c >= '0' && c <= '9') {
+                value = c - '0';
+            } else if ((c == 'X' || c == 'x') && length == 10 && i == 9) {
+                value = 10;
+            } else {
+                return false;
+            }
+            sum += length == 10 ? value * (10 - i) : value * (i % 2 == 0 ? 1 : 3);
+        }
+        return !checkDigit || sum % (length == 10 ? 11 : 10) == 0;
+    }
+
+    /**
+     * Counts and timing for one import
+     */
+    public static class ImportResult {
+        private final long startNanos;
+        private long elapsedNanos;
+        private long records;
+        private long imported;
+        private long duplicates;
+        private long rejected;
+        private int checkpoints;
+
+        ImportResult(long startNanos) {
+            this.startNanos = startNanos;
+        }
+
+        void finish(long endNanos) {
+            this.elapsedNanos = endNanos - startNanos;
+        }
+
+        // Getters
+        public long getRecords() {
+            return records;
+        }
+
+        public long getImported() {
+            return imported;
+        }
+
+        public long getDuplicates() {
+            return duplicates;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        public int getCheckpoints() {
+            return checkpoints;
+        }
+
+        /**
+         * Time taken so far, or in total once the import has finished
+         */
+        public double getElapsedSeconds() {
+            long nanos = elapsedNanos > 0 ? elapsedNanos : System.nanoTime() - startNanos;
+            return nanos / 1_000_000_000.0;
+        }
+
+        /**
+         * Records read per second, including duplicates and rejected records
+         */
+        public double getRecordsPerSecond() {
+            double seconds = getElapsedSeconds();
+            return seconds > 0 ? records / seconds : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Imported %,d books from %,d records (%,d duplicates, %,d rejected) "
+                    + "in %.1f s - %,.0f records/s",
+                    imported, records, duplicates, rejected, getElapsedSeconds(), getRecordsPerSecond());
+        }
+    }
+
+    // ==================== COMMAND LINE ====================
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.out.println("Usage: java -cp out com.librarysystem.io.CatalogImporter <file> "
+                    + "[--batch N] [--checkpoint N] [--delimiter comma|tab] [--no-checksum]");
+            return;
+        }
+
+        LibraryService libraryService = new LibraryService();
+        CatalogImporter importer = new CatalogImporter(libraryService);
+        try {
+            for (int i = 1; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--batch" -> importer.setBatchSize(Integer.parseInt(args[++i]));
+                    case "--checkpoint" -> importer.setCheckpointInterval(Integer.parseInt(args[++i]));
+                    case "--delimiter" -> importer.setDelimiter(args[++i].equals("tab") ? '\t' : ',');
+                    case "--no-checksum" -> importer.setValidateChecksum(false);
+                    default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+
+            long[] nextReport = {PROGRESS_INTERVAL};
+            importer.setProgressListener(progress -> {
+                if (progress.getRecords() >= nextReport[0]) {
+                    System.out.printf("  %,d records read, %,.0f records/s%n",
+                            progress.getRecords(), progress.getRecordsPerSecond());
+                    nextReport[0] += PROGRESS_INTERVAL;
+                }
+            });
+            System.out.println(importer.importFile(new File(args[0])));
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error importing catalog: " + e.getMessage());
+        } finally {
+            libraryService.close();
+        }
+    }
+}
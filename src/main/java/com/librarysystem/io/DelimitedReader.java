@@ -0,0 +1,123 @@
+package com.librarysystem.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming reader for comma- or tab-separated files.
+ *
+ * Fields may be wrapped in double quotes to contain the delimiter, line breaks or
+ * quotes (written twice, as in {@code "The ""Best"" Book"}). Only one record is held
+ * in memory at a time, so files of any size can be read.
+ */
+class DelimitedReader implements Closeable {
+    private final Reader in;
+    private final char delimiter;
+    private final StringBuilder field;
+    private int lineNumber;
+    private int recordLine;
+    private int peeked;
+
+    DelimitedReader(Reader in, char delimiter) {
+        this.in = in;
+        this.delimiter = delimiter;
+        this.field = new StringBuilder();
+        this.lineNumber = 1;
+        this.peeked = -2;
+    }
+
+    /**
+     * Read the next record
+     *
+     * @return the record's fields, or null at end of input
+     */
+    String[] next() throws IOException {
+        int c = read();
+        while (c == '\r' || c == '\n') {  // Skip blank lines
+            c = read();
+        }
+        if (c == -1) {
+            return null;
+        }
+
+        recordLine = lineNumber;
+        List<String> fields = new ArrayList<>();
+        field.setLength(0);
+        boolean quoted = false;
+        boolean wasQuoted = false;
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    throw new IOException("Unterminated quoted field starting on line " + recordLine);
+                }
+                if (c == '"') {
+                    int following = read();
+                    if (following == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        c = following;
+                        continue;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.length() == 0 && !wasQuoted) {
+                quoted = true;
+                wasQuoted = true;
+            } else if (c == delimiter) {
+                fields.add(field.toString());
+                field.setLength(0);
+                wasQuoted = false;
+            } else if (c == '\n' || c == '\r' || c == -1) {
+                if (c == '\r') {
+                    int following = read();
+                    if (following != '\n') {
+                        unread(following);
+                    }
+                }
+                fields.add(field.toString());
+                return fields.toArray(new String[0]);
+            } else {
+                field.append((char) c);
+            }
+            c = read();
+        }
+    }
+
+    /**
+     * Line on which the record last returned by {@link #next()} started
+     */
+    int getRecordLine() {
+        return recordLine;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private int read() throws IOException {
+        int c;
+        if (peeked != -2) {
+            c = peeked;
+            peeked = -2;
+        } else {
+            c = in.read();
+        }
+        if (c == '\n') {
+            lineNumber++;
+        }
+        return c;
+    }
+
+    private void unread(int c) {
+        if (c == '\n') {
+            lineNumber--;
+        }
+        peeked = c;
+    }
+}
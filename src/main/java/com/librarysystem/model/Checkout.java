@@ -36,6 +36,21 @@ public class Checkout implements Serializable, Comparable<Checkout> {
         this.returnDate = null;
     }
 
+    /**
+     * Restore a checkout with its full saved state (used when reloading persisted data).
+     */
+    public Checkout(String checkoutId, String memberId, String isbn, LocalDate checkoutDate,
+                   LocalDate dueDate, LocalDate returnDate, CheckoutStatus status, int daysAllowed) {
+        this.checkoutId = checkoutId;
+        this.memberId = memberId;
+        this.isbn = isbn;
+        this.checkoutDate = checkoutDate;
+        this.dueDate = dueDate;
+        this.returnDate = returnDate;
+        this.status = status;
+        this.daysAllowed = daysAllowed;
+    }
+
     // Getters
     public String getCheckoutId() {
         return checkoutId;
@@ -69,23 +84,47 @@ public class Checkout implements Serializable, Comparable<Checkout> {
         return daysAllowed;
     }
 
+    /**
+     * Check if the book is still out: the checkout is active or overdue, not returned
+     */
+    public boolean isCheckedOut() {
+        return status != CheckoutStatus.RETURNED;
+    }
+
     public boolean isOverdue() {
+        return isOverdue(LocalDate.now());
+    }
+
+    /**
+     * Check if the checkout is overdue on the given day
+     */
+    public boolean isOverdue(LocalDate today) {
+        if (status == CheckoutStatus.OVERDUE) {
+            return true;
+        }
         if (status == CheckoutStatus.ACTIVE) {
-            return LocalDate.now().isAfter(dueDate);
+            return today.isAfter(dueDate);
         }
         return false;
     }
 
     public int getOverdueDays() {
-        if (isOverdue()) {
-            return (int) java.time.temporal.ChronoUnit.DAYS.between(dueDate, LocalDate.now());
+        return getOverdueDays(LocalDate.now());
+    }
+
+    /**
+     * Days the checkout is overdue by on the given day, or 0 if it is not overdue
+     */
+    public int getOverdueDays(LocalDate today) {
+        if (isOverdue(today)) {
+            return (int) java.time.temporal.ChronoUnit.DAYS.between(dueDate, today);
         }
         return 0;
     }
 
     // Setters
     public void returnBook(LocalDate returnDate) {
-        if (status != CheckoutStatus.ACTIVE) {
+        if (!isCheckedOut()) {
             throw new IllegalStateException("Cannot return a book that is not checked out");
         }
         this.returnDate = returnDate;
@@ -93,7 +132,14 @@ public class Checkout implements Serializable, Comparable<Checkout> {
     }
 
     public void markOverdue() {
-        if (isOverdue() && status == CheckoutStatus.ACTIVE) {
+        markOverdue(LocalDate.now());
+    }
+
+    /**
+     * Mark an active checkout overdue if it is past its due date on the given day
+     */
+    public void markOverdue(LocalDate today) {
+        if (status == CheckoutStatus.ACTIVE && today.isAfter(dueDate)) {
             this.status = CheckoutStatus.OVERDUE;
         }
     }
@@ -0,0 +1,34 @@
+package com.librarysystem.persistence;
+
+import com.librarysystem.model.Book;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Binary codec for {@link Book} records.
+ */
+public class BookCodec implements RecordCodec<Book> {
+    public static final BookCodec INSTANCE = new BookCodec();
+
+    @Override
+    public void write(DataOutput out, Book book) throws IOException {
+        Codecs.writeString(out, book.getIsbn());
+        Codecs.writeString(out, book.getTitle());
+        Codecs.writeString(out, book.getAuthor());
+        Codecs.writeString(out, book.getGenre());
+        Codecs.writeVarInt(out, book.getTotalCopies());
+        Codecs.writeVarInt(out, book.getAvailableCopies());
+    }
+
+    @Override
+    public Book read(DataInput in) throws IOException {
+        String isbn = Codecs.readString(in);
+        String title = Codecs.readString(in);
+        String author = Codecs.readString(in);
+        String genre = Codecs.readString(in);
+        Book book = new Book(isbn, title, author, genre, Codecs.readVarInt(in));
+        book.setAvailableCopies(Codecs.readVarInt(in));
+        return book;
+    }
+}
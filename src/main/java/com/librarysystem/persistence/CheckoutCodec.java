@@ -0,0 +1,39 @@
+package com.librarysystem.persistence;
+
+import com.librarysystem.model.Checkout;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.LocalDate;
+
+/**
+ * Binary codec for {@link Checkout} records.
+ */
+public class CheckoutCodec implements RecordCodec<Checkout> {
+    public static final CheckoutCodec INSTANCE = new CheckoutCodec();
+
+    @Override
+    public void write(DataOutput out, Checkout checkout) throws IOException {
+        Codecs.writeString(out, checkout.getCheckoutId());
+        Codecs.writeString(out, checkout.getMemberId());
+        Codecs.writeString(out, checkout.getIsbn());
+        Codecs.writeDate(out, checkout.getCheckoutDate());
+        Codecs.writeDate(out, checkout.getDueDate());
+        Codecs.writeDate(out, checkout.getReturnDate());
+        Codecs.writeEnum(out, checkout.getStatus());
+        Codecs.writeVarInt(out, checkout.getDaysAllowed());
+    }
+
+    @Override
+    public Checkout read(DataInput in) throws IOException {
+        String checkoutId = Codecs.readString(in);
+        String memberId = Codecs.readString(in);
+        String isbn = Codecs.readString(in);
+        LocalDate checkoutDate = Codecs.readDate(in);
+        LocalDate dueDate = Codecs.readDate(in);
+        LocalDate returnDate = Codecs.readDate(in);
+        Checkout.CheckoutStatus status = Codecs.readEnum(in, Checkout.CheckoutStatus.values());
+        int daysAllowed = Codecs.readVarInt(in);
+        return new Checkout(checkoutId, memberId, isbn, checkoutDate, dueDate, returnDate, status, daysAllowed);
+    }
+}
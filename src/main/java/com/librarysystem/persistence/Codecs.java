@@ -0,0 +1,105 @@
+package com.librarysystem.persistence;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * Primitive encodings shared by the record codecs.
+ *
+ * Strings are written as a variable-length size followed by UTF-8 bytes (size 0 means
+ * null, otherwise size is length + 1). Dates are written as an int epoch day.
+ */
+public final class Codecs {
+    private static final int NULL_DATE = Integer.MIN_VALUE;
+
+    private Codecs() {
+    }
+
+    /**
+     * Write a nullable string
+     */
+    public static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    /**
+     * Read a nullable string
+     */
+    public static String readString(DataInput in) throws IOException {
+        int size = readVarInt(in);
+        if (size == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[size - 1];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Write a nullable date as an epoch day
+     */
+    public static void writeDate(DataOutput out, LocalDate date) throws IOException {
+        out.writeInt(date == null ? NULL_DATE : Math.toIntExact(date.toEpochDay()));
+    }
+
+    /**
+     * Read a nullable date written as an epoch day
+     */
+    public static LocalDate readDate(DataInput in) throws IOException {
+        int epochDay = in.readInt();
+        return epochDay == NULL_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    /**
+     * Write an enum constant as a single ordinal byte
+     */
+    public static void writeEnum(DataOutput out, Enum<?> value) throws IOException {
+        out.writeByte(value.ordinal());
+    }
+
+    /**
+     * Read an enum constant written with {@link #writeEnum(DataOutput, Enum)}
+     */
+    public static <E extends Enum<E>> E readEnum(DataInput in, E[] values) throws IOException {
+        int ordinal = in.readUnsignedByte();
+        if (ordinal >= values.length) {
+            throw new IOException("Invalid enum ordinal: " + ordinal);
+        }
+        return values[ordinal];
+    }
+
+    /**
+     * Write a non-negative int using 7 bits per byte
+     */
+    public static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Read an int written with {@link #writeVarInt(DataOutput, int)}
+     */
+    public static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable-length int");
+    }
+}
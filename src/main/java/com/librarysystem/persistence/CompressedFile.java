@@ -0,0 +1,375 @@
+package com.librarysystem.persistence;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Block-compressed container for snapshot files.
+ *
+ * <pre>
+ * int   magic ("LIBZ")
+ * short version
+ * byte  codec (a {@link PersistenceConfig.Compression} ordinal)
+ * int   block size
+ * long  uncompressed length
+ * int   block count
+ * long  index offset
+ * blocks: int compressed length, then the compressed bytes
+ * index:  one long file offset per block, in block order
+ * </pre>
+ * The uncompressed data is cut into fixed-size blocks that are compressed independently,
+ * so any byte can be reached by decompressing just the block that holds it, and all
+ * blocks can be decompressed in parallel. Blocks may appear in the file in any order;
+ * the writer stores the first block last so its header can be filled in at the end.
+ */
+final class CompressedFile {
+    static final int MAGIC = 0x4C49425A;
+    static final int VERSION = 1;
+    static final int BLOCK_SIZE = 64 * 1024;
+    private static final int HEADER_SIZE =
+            Integer.BYTES + Short.BYTES + Byte.BYTES + Integer.BYTES + Long.BYTES + Integer.BYTES + Long.BYTES;
+
+    private final PersistenceConfig.Compression compression;
+    private final int blockSize;
+    private final long length;
+    private final long[] blockOffsets;
+
+    private CompressedFile(PersistenceConfig.Compression compression, int blockSize, long length, long[] blockOffsets) {
+        this.compression = compression;
+        this.blockSize = blockSize;
+        this.length = length;
+        this.blockOffsets = blockOffsets;
+    }
+
+    /**
+     * Check whether a file was written by {@link Writer}
+     */
+    static boolean isCompressed(File file) throws IOException {
+        if (file.length() < HEADER_SIZE) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readInt() == MAGIC;
+        }
+    }
+
+    /**
+     * Size of the data once decompressed
+     */
+    static long uncompressedLength(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return readIndex(channel).length;
+        }
+    }
+
+    /**
+     * Stream the decompressed data from the start, one block at a time
+     */
+    static InputStream openStream(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            return new BlockInputStream(channel, readIndex(channel));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Decompress a whole file into memory, spreading the blocks over the pool's threads
+     * if one is given
+     */
+    static ByteBuffer decompress(File file, ForkJoinPool pool) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            CompressedFile index = readIndex(channel);
+            if (index.length > Integer.MAX_VALUE) {
+                throw new IOException("Compressed snapshot too large to load: " + file);
+            }
+            ByteBuffer compressed = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            byte[] data = new byte[(int) index.length];
+
+            IntStream blocks = IntStream.range(0, index.blockOffsets.length);
+            try {
+                if (pool != null) {
+                    // A parallel stream started from inside the pool runs on the pool's threads
+                    pool.submit(() -> blocks.parallel().forEach(block -> index.decompressBlock(compressed, block, data)))
+                            .join();
+                } else {
+                    blocks.forEach(block -> index.decompressBlock(compressed, block, data));
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            return ByteBuffer.wrap(data);
+        }
+    }
+
+    private static CompressedFile readIndex(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(channel, header, 0);
+        header.flip();
+        if (header.getInt() != MAGIC) {
+            throw new IOException("Not a compressed library file");
+        }
+        int version = header.getShort() & 0xFFFF;
+        if (version != VERSION) {
+            throw new IOException("Unsupported compressed file version: " + version);
+        }
+        int codec = header.get();
+        PersistenceConfig.Compression[] codecs = PersistenceConfig.Compression.values();
+        if (codec <= 0 || codec >= codecs.length) {
+            throw new IOException("Unknown compression codec: " + codec);
+        }
+        int blockSize = header.getInt();
+        long length = header.getLong();
+        int blockCount = header.getInt();
+        long indexOffset = header.getLong();
+        if (blockSize <= 0 || length < 0 || blockCount < 0
+                || blockCount != Math.max(1, (length + blockSize - 1) / blockSize)
+                || indexOffset + (long) blockCount * Long.BYTES > channel.size()) {
+            throw new IOException("Corrupt compressed file header");
+        }
+
+        ByteBuffer index = ByteBuffer.allocate(blockCount * Long.BYTES);
+        readFully(channel, index, indexOffset);
+        index.flip();
+        long[] blockOffsets = new long[blockCount];
+        for (int i = 0; i < blockCount; i++) {
+            blockOffsets[i] = index.getLong();
+        }
+        return new CompressedFile(codecs[codec], blockSize, length, blockOffsets);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Compressed file is truncated");
+            }
+        }
+    }
+
+    private int blockLength(int block) {
+        return (int) Math.min(blockSize, length - (long) block * blockSize);
+    }
+
+    private void decompressBlock(ByteBuffer file, int block, byte[] into) {
+        try {
+            byte[] compressed = compressedBlock(file, block);
+            Compressor.decompress(compression, compressed, 0, compressed.length,
+                    into, block * blockSize, blockLength(block));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private byte[] compressedBlock(ByteBuffer file, int block) throws IOException {
+        long offset = blockOffsets[block];
+        if (offset < HEADER_SIZE || offset + Integer.BYTES > file.capacity()) {
+            throw new IOException("Corrupt compressed block offset: " + offset);
+        }
+        int size = file.getInt((int) offset);
+        if (size < 0 || offset + Integer.BYTES + size > file.capacity()) {
+            throw new IOException("Corrupt compressed block size: " + size);
+        }
+        byte[] compressed = new byte[size];
+        file.slice((int) offset + Integer.BYTES, size).get(compressed);
+        return compressed;
+    }
+
+    /**
+     * Decompresses blocks in order as they are read
+     */
+    private static class BlockInputStream extends InputStream {
+        private final FileChannel channel;
+        private final CompressedFile index;
+        private final byte[] block;
+        private int nextBlock;
+        private int position;
+        private int limit;
+
+        BlockInputStream(FileChannel channel, CompressedFile index) {
+            this.channel = channel;
+            this.index = index;
+            this.block = new byte[index.blockSize];
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (position == limit && !fill()) {
+                return -1;
+            }
+            return block[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (position == limit && !fill()) {
+                return -1;
+            }
+            int count = Math.min(len, limit - position);
+            System.arraycopy(block, position, b, off, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        private boolean fill() throws IOException {
+            if (nextBlock == index.blockOffsets.length) {
+                return false;
+            }
+            long offset = index.blockOffsets[nextBlock];
+            ByteBuffer size = ByteBuffer.allocate(Integer.BYTES);
+            readFully(channel, size, offset);
+            int compressedSize = size.getInt(0);
+            if (compressedSize < 0 || offset + Integer.BYTES + compressedSize > channel.size()) {
+                throw new IOException("Corrupt compressed block size: " + compressedSize);
+            }
+            ByteBuffer compressed = ByteBuffer.allocate(compressedSize);
+            readFully(channel, compressed, offset + Integer.BYTES);
+
+            limit = index.blockLength(nextBlock);
+            Compressor.decompress(index.compression, compressed.array(), 0, compressedSize, block, 0, limit);
+            position = 0;
+            nextBlock++;
+            return true;
+        }
+    }
+
+    /**
+     * Compresses everything written to it into a container. The first block is held
+     * in memory until {@link #finish(ByteBuffer)}, so a file header that is only known
+     * at the end can still be written at the start of the data.
+     */
+    static class Writer extends OutputStream {
+        private final FileChannel channel;
+        private final Compressor compressor;
+        private byte[] block;
+        private int used;
+        private byte[] firstBlock;
+        private int firstBlockLength;
+        private long[] blockOffsets;
+        private int blockCount;
+        private long length;
+        private long filePosition;
+
+        Writer(FileChannel channel, PersistenceConfig.Compression compression, int level) throws IOException {
+            this.channel = channel;
+            this.compressor = new Compressor(compression, level);
+            this.block = new byte[BLOCK_SIZE];
+            this.blockOffsets = new long[64];
+            writeBytes(ByteBuffer.allocate(HEADER_SIZE));  // Filled in by finish()
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (used == block.length) {
+                endBlock();
+            }
+            block[used++] = (byte) b;
+            length++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (used == block.length) {
+                    endBlock();
+                }
+                int count = Math.min(len, block.length - used);
+                System.arraycopy(b, off, block, used, count);
+                used += count;
+                off += count;
+                len -= count;
+                length += count;
+            }
+        }
+
+        /**
+         * Overwrite the start of the data with {@code prefix}, then write the remaining
+         * blocks, the index and the header. The prefix must fit in the first block.
+         */
+        void finish(ByteBuffer prefix) throws IOException {
+            if (used > 0 || blockCount == 0) {
+                endBlock();
+            }
+            if (prefix.remaining() > firstBlockLength) {
+                throw new IllegalStateException("Prefix does not fit in the first block");
+            }
+            prefix.get(firstBlock, 0, prefix.remaining());
+            blockOffsets[0] = filePosition;
+            writeBlock(firstBlock, firstBlockLength);
+
+            long indexOffset = filePosition;
+            ByteBuffer index = ByteBuffer.allocate(blockCount * Long.BYTES);
+            for (int i = 0; i < blockCount; i++) {
+                index.putLong(blockOffsets[i]);
+            }
+            index.flip();
+            writeBytes(index);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putShort((short) VERSION);
+            header.put((byte) compressor.getCompression().ordinal());
+            header.putInt(BLOCK_SIZE);
+            header.putLong(length);
+            header.putInt(blockCount);
+            header.putLong(indexOffset);
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            compressor.end();
+        }
+
+        private void endBlock() throws IOException {
+            if (blockCount == blockOffsets.length) {
+                blockOffsets = Arrays.copyOf(blockOffsets, blockCount * 2);
+            }
+            if (blockCount == 0) {
+                firstBlock = block;
+                firstBlockLength = used;
+                block = new byte[BLOCK_SIZE];
+            } else {
+                blockOffsets[blockCount] = filePosition;
+                writeBlock(block, used);
+            }
+            blockCount++;
+            used = 0;
+        }
+
+        private void writeBlock(byte[] data, int dataLength) throws IOException {
+            byte[] compressed = compressor.compress(data, 0, dataLength);
+            ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + compressed.length);
+            record.putInt(compressed.length);
+            record.put(compressed);
+            record.flip();
+            writeBytes(record);
+        }
+
+        private void writeBytes(ByteBuffer buffer) throws IOException {
+            filePosition += buffer.remaining();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.librarysystem.persistence;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses and decompresses independent blocks of bytes with one of the
+ * {@link PersistenceConfig.Compression} codecs. Each block can be decompressed on its own,
+ * which is what keeps compressed files seekable.
+ *
+ * A compressor keeps its {@link Deflater} between blocks, so one instance must not be
+ * shared between threads.
+ */
+final class Compressor {
+    private final PersistenceConfig.Compression compression;
+    private final int level;
+    private Deflater deflater;
+    private byte[] output;
+
+    Compressor(PersistenceConfig.Compression compression, int level) {
+        if (compression == PersistenceConfig.Compression.NONE) {
+            throw new IllegalArgumentException("No compressor for NONE");
+        }
+        this.compression = compression;
+        this.level = level;
+        this.output = new byte[1024];
+    }
+
+    PersistenceConfig.Compression getCompression() {
+        return compression;
+    }
+
+    /**
+     * Compress {@code length} bytes of {@code data}
+     *
+     * @return the compressed bytes
+     */
+    byte[] compress(byte[] data, int offset, int length) throws IOException {
+        if (compression == PersistenceConfig.Compression.GZIP) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(length / 2 + 64);
+            try (GZIPOutputStream out = new GZIPOutputStream(buffer) {
+                {
+                    def.setLevel(level);
+                }
+            }) {
+                out.write(data, offset, length);
+            }
+            return buffer.toByteArray();
+        }
+
+        if (deflater == null) {
+            deflater = new Deflater(level, true);
+        }
+        deflater.reset();
+        deflater.setInput(data, offset, length);
+        deflater.finish();
+        int size = 0;
+        while (!deflater.finished()) {
+            if (size == output.length) {
+                output = Arrays.copyOf(output, output.length * 2);
+            }
+            size += deflater.deflate(output, size, output.length - size);
+        }
+        return Arrays.copyOf(output, size);
+    }
+
+    /**
+     * Release the native memory held by the deflater
+     */
+    void end() {
+        if (deflater != null) {
+            deflater.end();
+            deflater = null;
+        }
+    }
+
+    /**
+     * Decompress one block into exactly {@code length} bytes of {@code into}
+     */
+    static void decompress(PersistenceConfig.Compression compression, byte[] data, int offset, int dataLength,
+                           byte[] into, int intoOffset, int length) throws IOException {
+        switch (compression) {
+            case DEFLATE -> {
+                Inflater inflater = new Inflater(true);
+                try {
+                    inflater.setInput(data, offset, dataLength);
+                    int size = 0;
+                    while (size < length) {
+                        int inflated = inflater.inflate(into, intoOffset + size, length - size);
+                        if (inflated == 0 && (inflater.needsInput() || inflater.finished())) {
+                            throw new IOException("Compressed block is truncated");
+                        }
+                        size += inflated;
+                    }
+                } catch (DataFormatException e) {
+                    throw new IOException("Corrupt compressed block: " + e.getMessage(), e);
+                } finally {
+                    inflater.end();
+                }
+            }
+            case GZIP -> {
+                try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(data, offset, dataLength))) {
+                    if (in.readNBytes(into, intoOffset, length) != length) {
+                        throw new IOException("Compressed block is truncated");
+                    }
+                    // Reading to the end makes the stream check the block's CRC
+                    if (in.read() != -1) {
+                        throw new IOException("Compressed block is longer than expected");
+                    }
+                }
+            }
+            default -> throw new IOException("Unknown compression: " + compression);
+        }
+    }
+}
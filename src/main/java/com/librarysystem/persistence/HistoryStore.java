@@ -0,0 +1,195 @@
+package com.librarysystem.persistence;
+
+import com.librarysystem.model.Checkout;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Append-only file of returned checkouts that no longer need to be kept in memory.
+ *
+ * Each call to {@link #append(Collection)} writes one frame, laid out like a journal
+ * entry: an int length, the number of checkouts, then the {@link CheckoutCodec} records.
+ * Frames are never rewritten. Queries stream the whole file, which keeps memory use flat
+ * at the cost of a sequential read; history lookups are rare compared to checkouts and
+ * returns.
+ *
+ * Checkouts are appended here before their removal is journaled, so a crash in between
+ * leaves the last frame's checkouts in memory as well, and the service will try to
+ * archive them again. The first append after opening skips any checkout already in the
+ * last frame, so nothing is stored twice.
+ */
+public class HistoryStore implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File file;
+    private final boolean sync;
+    private FileChannel channel;
+    private Set<String> lastFrameIds;  // Checkout IDs in the final frame, until the next append
+
+    public HistoryStore(File file, boolean sync) {
+        this.file = file;
+        this.sync = sync;
+    }
+
+    /**
+     * Append checkouts to the end of the history as a single frame
+     */
+    public synchronized void append(Collection<Checkout> checkouts) throws IOException {
+        FileChannel out = openChannel();
+
+        List<Checkout> toWrite = new ArrayList<>(checkouts.size());
+        for (Checkout checkout : checkouts) {
+            if (lastFrameIds == null || !lastFrameIds.contains(checkout.getCheckoutId())) {
+                toWrite.add(checkout);
+            }
+        }
+        lastFrameIds = null;
+        if (toWrite.isEmpty()) {
+            return;
+        }
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(toWrite.size() * 64);
+        DataOutputStream frame = new DataOutputStream(buffer);
+        frame.writeInt(0);  // Frame length, filled in below
+        frame.writeInt(toWrite.size());
+        for (Checkout checkout : toWrite) {
+            CheckoutCodec.INSTANCE.write(frame, checkout);
+        }
+
+        ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+        bytes.putInt(0, bytes.capacity() - Integer.BYTES);
+        while (bytes.hasRemaining()) {
+            out.write(bytes);
+        }
+        if (sync) {
+            out.force(false);
+        }
+    }
+
+    /**
+     * Perform an action on every archived checkout, oldest first
+     */
+    public void forEach(Consumer<Checkout> action) throws IOException {
+        scan(frame -> {
+            for (Checkout checkout : frame) {
+                action.accept(checkout);
+            }
+        });
+    }
+
+    /**
+     * Archived checkouts of one member, oldest first
+     */
+    public List<Checkout> findByMember(String memberId) throws IOException {
+        return find(checkout -> checkout.getMemberId().equals(memberId));
+    }
+
+    /**
+     * Archived checkouts of one book, oldest first
+     */
+    public List<Checkout> findByIsbn(String isbn) throws IOException {
+        return find(checkout -> checkout.getIsbn().equals(isbn));
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private List<Checkout> find(Predicate<Checkout> filter) throws IOException {
+        List<Checkout> results = new ArrayList<>();
+        forEach(checkout -> {
+            if (filter.test(checkout)) {
+                results.add(checkout);
+            }
+        });
+        return results;
+    }
+
+    /**
+     * Decode every complete frame, stopping at a torn one left by a crash
+     *
+     * @return length of the file up to the end of the last complete frame
+     */
+    private long scan(Consumer<List<Checkout>> action) throws IOException {
+        if (!file.exists()) {
+            return 0;
+        }
+
+        long fileLength = file.length();
+        long validLength = 0;
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (length < 0 || validLength + Integer.BYTES + length > fileLength) {
+                    break;
+                }
+
+                byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                DataInputStream frame = new DataInputStream(new ByteArrayInputStream(bytes));
+                int count = frame.readInt();
+                List<Checkout> checkouts = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    checkouts.add(CheckoutCodec.INSTANCE.read(frame));
+                }
+                action.accept(checkouts);
+                validLength += Integer.BYTES + length;
+            }
+        }
+        return validLength;
+    }
+
+    /**
+     * Open the file for appending. Any torn frame at the end is cut off so new frames
+     * start on a boundary, and the IDs in the last complete frame are remembered.
+     */
+    private FileChannel openChannel() throws IOException {
+        if (channel == null) {
+            Set<String> ids = new HashSet<>();
+            long validLength = scan(frame -> {
+                ids.clear();
+                for (Checkout checkout : frame) {
+                    ids.add(checkout.getCheckoutId());
+                }
+            });
+            if (file.exists() && validLength < file.length()) {
+                try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                    raf.setLength(validLength);
+                }
+            }
+            lastFrameIds = ids;
+            channel = FileChannel.open(file.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        return channel;
+    }
+}
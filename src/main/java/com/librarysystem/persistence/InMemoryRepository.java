@@ -0,0 +1,36 @@
+package com.librarysystem.persistence;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Storage engine that stores nothing. Every service starts empty and all data is lost
+ * when it stops, which makes it useful for tests and for benchmarking the service
+ * without disk I/O. Old checkouts are never archived.
+ */
+public class InMemoryRepository implements LibraryRepository {
+
+    @Override
+    public void load(Target target, ForkJoinPool pool, LoadReport report) {
+        // Nothing stored, nothing to load
+    }
+
+    @Override
+    public void record(Mutation... mutations) {
+        // Changes only live in the service's maps
+    }
+
+    @Override
+    public void checkpoint() {
+        // Nothing to write
+    }
+
+    @Override
+    public HistoryStore getHistory() {
+        return null;
+    }
+
+    @Override
+    public void close() {
+        // Nothing to release
+    }
+}
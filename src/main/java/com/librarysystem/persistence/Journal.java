@@ -0,0 +1,545 @@
+package com.librarysystem.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only write-ahead journal of library mutations.
+ *
+ * Each segment starts with a small header, and each entry is one framed record: an int
+ * length, a CRC-32C of the rest of the frame, and the encoded mutations of a single
+ * service operation. A crash can only leave a partial or garbled frame at the end of a
+ * segment. Replay stops reading a segment at the first frame that is cut short or fails
+ * its checksum and cuts that tail off, so only the damaged entry is lost, and carries on
+ * with the next segment. Segments written by older versions have no header or checksums
+ * and are still read.
+ *
+ * How an entry reaches disk depends on the {@link PersistenceConfig.Durability} level:
+ * <ul>
+ *   <li>FSYNC_EACH - every append is written and fsynced before it returns</li>
+ *   <li>GROUP_COMMIT - appends are queued and a flusher thread writes everything that
+ *       arrived within the commit window with a single write and fsync</li>
+ *   <li>OS_BUFFERED - every append is written to the OS page cache without an fsync</li>
+ * </ul>
+ * Each append returns a sequence number; {@link #awaitDurable(long)} blocks until that
+ * entry is as durable as the configured level promises.
+ *
+ * The journal is split into numbered segment files ({@code library_data.journal.000001},
+ * {@code .000002}, ...). New entries always go to the highest-numbered segment;
+ * {@link #rotate()} seals it and starts the next one, so the {@link Snapshotter} can fold
+ * sealed segments into a snapshot and then delete them.
+ *
+ * With compression enabled, entries larger than {@value #COMPRESSION_THRESHOLD} bytes
+ * (bulk imports, history archiving) are compressed on their own; the top bit of the
+ * mutation count marks them. Small entries gain little from compression and are always
+ * stored as they are, so every entry can still be read and repaired independently.
+ */
+public class Journal implements Closeable {
+    static final int COMPRESSION_THRESHOLD = 4096;
+    private static final int COMPRESSED_FLAG = 0x80000000;
+    private static final int SEGMENT_MAGIC = 0x4C49424A;  // "LIBJ"
+    private static final int SEGMENT_VERSION = 1;
+    private static final int SEGMENT_HEADER_SIZE = Integer.BYTES + Integer.BYTES;
+    private static final int FRAME_HEADER_SIZE = Integer.BYTES + Integer.BYTES;
+
+    private final File file;
+    private final PersistenceConfig.Durability durability;
+    private final long groupCommitWindowMillis;
+    private final PersistenceConfig.Compression compression;
+    private final int compressionLevel;
+    private final List<ByteBuffer> pending;  // Frames waiting for the group commit flusher
+    private FileChannel channel;
+    private Thread flusher;
+    private IOException flushError;
+    private boolean closed;
+    private boolean flushInProgress;
+    private long activeSegment;
+    private int entryCount;
+    private long appendedSequence;
+    private long durableSequence;
+
+    public Journal(File file, PersistenceConfig.Durability durability, long groupCommitWindowMillis) {
+        this(file, durability, groupCommitWindowMillis, PersistenceConfig.Compression.NONE, 0);
+    }
+
+    public Journal(File file, PersistenceConfig.Durability durability, long groupCommitWindowMillis,
+                   PersistenceConfig.Compression compression, int compressionLevel) {
+        this.file = file;
+        this.durability = durability;
+        this.groupCommitWindowMillis = groupCommitWindowMillis;
+        this.compression = compression;
+        this.compressionLevel = compressionLevel;
+        this.pending = new ArrayList<>();
+        this.entryCount = 0;
+
+        List<Long> segments = existingSegments();
+        this.activeSegment = segments.isEmpty() ? 1 : segments.get(segments.size() - 1);
+        if (isLegacySegment(segmentFile(activeSegment))) {
+            activeSegment++;  // Never mix checksummed entries into an older segment
+        }
+    }
+
+    /**
+     * Replay all intact entries in every segment, in the order they were written. Any
+     * damaged tail found in a segment is cut off.
+     *
+     * @return number of entries replayed
+     */
+    public synchronized int replay(Consumer<Mutation> consumer) throws IOException {
+        int replayed = 0;
+        for (File segment : segmentFiles(activeSegment)) {
+            replayed += readSegment(segment, consumer, true);
+        }
+        entryCount = replayed;
+        return replayed;
+    }
+
+    /**
+     * Read all intact entries from one segment file, stopping at the first entry that is
+     * cut short or fails its checksum.
+     *
+     * @param repairTail cut off a damaged tail so new entries can be appended cleanly
+     * @return number of entries read
+     */
+    public static int readSegment(File segment, Consumer<Mutation> consumer, boolean repairTail) throws IOException {
+        if (!segment.exists()) {
+            return 0;
+        }
+
+        long fileLength = segment.length();
+        long validLength = 0;
+        int read = 0;
+        CRC32C crc = new CRC32C();
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(segment)))) {
+            boolean checksummed = false;
+            if (fileLength >= SEGMENT_HEADER_SIZE) {
+                in.mark(SEGMENT_HEADER_SIZE);
+                if (in.readInt() == SEGMENT_MAGIC) {
+                    int version = in.readInt();
+                    if (version != SEGMENT_VERSION) {
+                        throw new IOException("Unsupported journal segment version: " + version);
+                    }
+                    checksummed = true;
+                    validLength = SEGMENT_HEADER_SIZE;
+                } else {
+                    in.reset();  // Older segment without a header
+                }
+            }
+
+            int frameHeaderSize = checksummed ? FRAME_HEADER_SIZE : Integer.BYTES;
+            while (validLength + frameHeaderSize <= fileLength) {
+                int length = in.readInt();
+                int checksum = checksummed ? in.readInt() : 0;
+                if (length < Integer.BYTES || validLength + frameHeaderSize + length > fileLength) {
+                    break;  // Torn final entry from a crash mid-write
+                }
+                byte[] frame = new byte[length];
+                in.readFully(frame);
+                if (checksummed) {
+                    crc.reset();
+                    crc.update(frame, 0, length);
+                    if ((int) crc.getValue() != checksum) {
+                        break;  // Garbled entry
+                    }
+                }
+
+                DataInputStream entry = new DataInputStream(new ByteArrayInputStream(frame));
+                int mutationCount = entry.readInt();
+                if ((mutationCount & COMPRESSED_FLAG) != 0) {
+                    mutationCount &= ~COMPRESSED_FLAG;
+                    entry = decompressEntry(entry, frame);
+                }
+                for (int i = 0; i < mutationCount; i++) {
+                    consumer.accept(Mutation.readFrom(entry));
+                }
+
+                validLength += frameHeaderSize + length;
+                read++;
+            }
+        }
+
+        if (repairTail && validLength < fileLength) {
+            System.err.println("Discarding " + (fileLength - validLength)
+                    + " bytes of damaged journal entries at the end of " + segment.getName());
+            try (RandomAccessFile raf = new RandomAccessFile(segment, "rw")) {
+                raf.setLength(validLength);
+            }
+        }
+        return read;
+    }
+
+    /**
+     * Append one entry made up of the given mutations.
+     *
+     * @return sequence number of the entry, to pass to {@link #awaitDurable(long)}
+     */
+    public long append(Mutation... mutations) throws IOException {
+        ByteBuffer frame = encode(mutations);
+
+        synchronized (this) {
+            if (closed) {
+                throw new IOException("Journal is closed");
+            }
+            entryCount++;
+            long sequence = ++appendedSequence;
+
+            if (durability == PersistenceConfig.Durability.GROUP_COMMIT) {
+                startFlusher();
+                pending.add(frame);
+                notifyAll();
+                return sequence;
+            }
+
+            FileChannel out = openChannel();
+            while (frame.hasRemaining()) {
+                out.write(frame);
+            }
+            if (durability == PersistenceConfig.Durability.FSYNC_EACH) {
+                out.force(false);
+            }
+            durableSequence = sequence;
+            return sequence;
+        }
+    }
+
+    /**
+     * Block until the entry with the given sequence number has been committed
+     */
+    public synchronized void awaitDurable(long sequence) throws IOException {
+        while (durableSequence < sequence) {
+            if (flushError != null) {
+                throw flushError;
+            }
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted waiting for journal commit", e);
+            }
+        }
+    }
+
+    /**
+     * Block until every entry appended so far has been committed
+     */
+    public void flush() throws IOException {
+        long sequence;
+        synchronized (this) {
+            sequence = appendedSequence;
+        }
+        awaitDurable(sequence);
+    }
+
+    /**
+     * Seal the active segment and direct new entries to a fresh one. Entries still
+     * queued for group commit land in the new segment.
+     *
+     * @return number of the segment that was sealed
+     */
+    public synchronized long rotate() throws IOException {
+        while (flushInProgress) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted rotating journal", e);
+            }
+        }
+
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+        entryCount = 0;
+        return activeSegment++;
+    }
+
+    /**
+     * Segment files up to and including the given segment number, oldest first
+     */
+    public synchronized List<File> segmentFiles(long throughSegment) {
+        return segmentFiles(0, throughSegment);
+    }
+
+    /**
+     * Segment files numbered after {@code afterSegment} up to and including
+     * {@code throughSegment}, oldest first
+     */
+    public synchronized List<File> segmentFiles(long afterSegment, long throughSegment) {
+        List<File> files = new ArrayList<>();
+        if (afterSegment == 0 && file.exists()) {
+            files.add(file);  // Unsegmented journal written by older versions
+        }
+        for (long segment : existingSegments()) {
+            if (segment > afterSegment && segment <= throughSegment) {
+                files.add(segmentFile(segment));
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Delete sealed segments once a snapshot covering them is safely on disk
+     */
+    public synchronized void deleteSegments(long throughSegment) throws IOException {
+        if (throughSegment >= activeSegment) {
+            throw new IllegalArgumentException("Cannot delete the active journal segment");
+        }
+        for (File segment : segmentFiles(throughSegment)) {
+            Files.deleteIfExists(segment.toPath());
+        }
+    }
+
+    /**
+     * Number of entries in the active segment
+     */
+    public synchronized int getEntryCount() {
+        return entryCount;
+    }
+
+    public PersistenceConfig.Durability getDurability() {
+        return durability;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            flush();
+            closed = true;
+            notifyAll();
+        }
+
+        if (flusher != null) {
+            try {
+                flusher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        synchronized (this) {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        }
+    }
+
+    private ByteBuffer encode(Mutation... mutations) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(128);
+        DataOutputStream entry = new DataOutputStream(buffer);
+        entry.writeInt(0);  // Frame length, filled in below
+        entry.writeInt(0);  // Checksum, filled in below
+        entry.writeInt(mutations.length);
+        for (Mutation mutation : mutations) {
+            mutation.writeTo(entry);
+        }
+
+        int mutationsOffset = FRAME_HEADER_SIZE + Integer.BYTES;
+        ByteBuffer frame;
+        if (compression != PersistenceConfig.Compression.NONE
+                && buffer.size() - mutationsOffset > COMPRESSION_THRESHOLD) {
+            frame = encodeCompressed(buffer.toByteArray(), mutationsOffset, mutations.length);
+        } else {
+            frame = ByteBuffer.wrap(buffer.toByteArray());
+        }
+
+        CRC32C crc = new CRC32C();
+        crc.update(frame.array(), FRAME_HEADER_SIZE, frame.capacity() - FRAME_HEADER_SIZE);
+        frame.putInt(0, frame.capacity() - FRAME_HEADER_SIZE);
+        frame.putInt(Integer.BYTES, (int) crc.getValue());
+        return frame;
+    }
+
+    /**
+     * Compressed frame layout: int length, int checksum, int mutation count with the top
+     * bit set, byte codec, int uncompressed size, compressed mutations. The length and
+     * checksum are left for the caller to fill in.
+     */
+    private ByteBuffer encodeCompressed(byte[] encoded, int mutationsOffset, int mutationCount) throws IOException {
+        Compressor compressor = new Compressor(compression, compressionLevel);
+        byte[] compressed;
+        try {
+            compressed = compressor.compress(encoded, mutationsOffset, encoded.length - mutationsOffset);
+        } finally {
+            compressor.end();
+        }
+
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_HEADER_SIZE + Integer.BYTES + Byte.BYTES + Integer.BYTES
+                + compressed.length);
+        frame.position(FRAME_HEADER_SIZE);
+        frame.putInt(mutationCount | COMPRESSED_FLAG);
+        frame.put((byte) compression.ordinal());
+        frame.putInt(encoded.length - mutationsOffset);
+        frame.put(compressed);
+        frame.flip();
+        return frame;
+    }
+
+    private static DataInputStream decompressEntry(DataInputStream entry, byte[] frame) throws IOException {
+        int codec = entry.readUnsignedByte();
+        PersistenceConfig.Compression[] codecs = PersistenceConfig.Compression.values();
+        if (codec == 0 || codec >= codecs.length) {
+            throw new IOException("Unknown journal compression codec: " + codec);
+        }
+        int size = entry.readInt();
+        if (size < 0) {
+            throw new IOException("Corrupt journal entry size: " + size);
+        }
+        int offset = Integer.BYTES + Byte.BYTES + Integer.BYTES;
+        byte[] mutations = new byte[size];
+        Compressor.decompress(codecs[codec], frame, offset, frame.length - offset, mutations, 0, size);
+        return new DataInputStream(new ByteArrayInputStream(mutations));
+    }
+
+    private FileChannel openChannel() throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(segmentFile(activeSegment).toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            if (channel.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+                header.putInt(SEGMENT_MAGIC);
+                header.putInt(SEGMENT_VERSION);
+                header.flip();
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+            }
+        }
+        return channel;
+    }
+
+    private static boolean isLegacySegment(File segment) {
+        if (segment.length() == 0) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(segment))) {
+            return segment.length() < SEGMENT_HEADER_SIZE || in.readInt() != SEGMENT_MAGIC;
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    private File segmentFile(long segment) {
+        return new File(String.format("%s.%06d", file.getPath(), segment));
+    }
+
+    private List<Long> existingSegments() {
+        List<Long> segments = new ArrayList<>();
+        File directory = file.getAbsoluteFile().getParentFile();
+        String prefix = file.getName() + ".";
+        String[] names = directory.list();
+        if (names != null) {
+            for (String name : names) {
+                if (name.startsWith(prefix) && name.length() > prefix.length()) {
+                    try {
+                        segments.add(Long.parseLong(name.substring(prefix.length())));
+                    } catch (NumberFormatException e) {
+                        // Not a segment file
+                    }
+                }
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private void startFlusher() {
+        if (flusher == null) {
+            flusher = new Thread(this::runFlusher, "journal-group-commit");
+            flusher.setDaemon(true);
+            flusher.start();
+        }
+    }
+
+    /**
+     * Group commit loop: wait for work, let the commit window fill up, then write and
+     * fsync the whole batch at once and wake every appender it covered.
+     */
+    private void runFlusher() {
+        while (true) {
+            synchronized (this) {
+                while (pending.isEmpty() && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pending.isEmpty()) {
+                    return;  // Closed and fully drained
+                }
+            }
+
+            if (groupCommitWindowMillis > 0) {
+                try {
+                    Thread.sleep(groupCommitWindowMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            ByteBuffer[] batch;
+            long batchSequence;
+            FileChannel out;
+            synchronized (this) {
+                batch = pending.toArray(new ByteBuffer[0]);
+                batchSequence = appendedSequence;
+                pending.clear();
+                try {
+                    out = openChannel();
+                } catch (IOException e) {
+                    flushError = e;
+                    notifyAll();
+                    return;
+                }
+                flushInProgress = true;
+            }
+
+            try {
+                long remaining = 0;
+                for (ByteBuffer frame : batch) {
+                    remaining += frame.remaining();
+                }
+                while (remaining > 0) {
+                    remaining -= out.write(batch);
+                }
+                out.force(false);
+            } catch (IOException e) {
+                synchronized (this) {
+                    flushError = e;
+                    flushInProgress = false;
+                    notifyAll();
+                }
+                return;
+            }
+
+            synchronized (this) {
+                durableSequence = batchSequence;
+                flushInProgress = false;
+                notifyAll();
+            }
+        }
+    }
+}
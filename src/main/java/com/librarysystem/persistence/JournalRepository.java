@@ -0,0 +1,95 @@
+package com.librarysystem.persistence;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Log-structured storage engine. Each change is appended to the {@link Journal} and
+ * made durable according to the configured {@link PersistenceConfig.Durability}; the
+ * {@link Snapshotter} folds sealed journal segments into the snapshot file in the
+ * background. Loading reads the snapshot and replays the journal on top of it.
+ */
+public class JournalRepository extends SnapshotFileRepository {
+    public static final String JOURNAL_FILE = "library_data.journal";
+
+    private final Journal journal;
+    private final Snapshotter snapshotter;
+    private volatile IOException loadFailure;  // Why the stored data could not be loaded, or null
+
+    public JournalRepository(File directory, PersistenceConfig config) {
+        super(directory, config);
+        this.journal = new Journal(new File(directory, JOURNAL_FILE), config.getDurability(),
+                config.getGroupCommitWindowMillis(), config.getCompression(), config.getCompressionLevel());
+        this.snapshotter = new Snapshotter(snapshotFile, journal, config);
+    }
+
+    /**
+     * Load the snapshot, replay the journal on top of it and start taking snapshots.
+     *
+     * If the snapshot or the journal cannot be read, the exception is thrown and the
+     * repository becomes read-only: the snapshotter is not started and nothing more is
+     * written, so a partly loaded library is never compacted over the data on disk.
+     */
+    @Override
+    public void load(Target target, ForkJoinPool pool, LoadReport report) throws IOException {
+        try {
+            super.load(target, pool, report);
+            long start = System.nanoTime();
+            journal.replay(target::apply);
+            report.phase("replay journal", start);
+        } catch (IOException e) {
+            loadFailure = e;
+            throw e;
+        }
+        snapshotter.start();
+    }
+
+    /**
+     * Append the changes as one journal entry and wait until it is committed
+     */
+    @Override
+    public void record(Mutation... mutations) throws IOException {
+        checkWritable();
+        journal.awaitDurable(journal.append(mutations));
+        snapshotter.mutationRecorded();
+    }
+
+    /**
+     * The journal is cheap to append to, so bulk changes are journaled like any other
+     */
+    @Override
+    public void recordBulk(Mutation... mutations) throws IOException {
+        record(mutations);
+    }
+
+    /**
+     * Ask the background snapshotter for an immediate snapshot and wait for it
+     */
+    @Override
+    public void checkpoint() throws IOException {
+        checkWritable();
+        snapshotter.snapshotNow();
+    }
+
+    private void checkWritable() throws IOException {
+        if (loadFailure != null) {
+            throw new IOException("Storage is read-only because its data could not be loaded: "
+                    + loadFailure.getMessage());
+        }
+    }
+
+    /**
+     * Stop the background snapshotter, flush any pending journal writes and release the
+     * journal and history files
+     */
+    @Override
+    public void close() throws IOException {
+        snapshotter.close();
+        try {
+            journal.close();
+        } finally {
+            super.close();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.librarysystem.persistence;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Storage engine behind the library service.
+ *
+ * The service keeps all data in memory and tells its repository about every change as a
+ * list of {@link Mutation}s; how and when those reach disk is up to the engine. Engines
+ * are chosen at startup with {@link PersistenceConfig#getMode()}:
+ * <ul>
+ *   <li>MEMORY - {@link InMemoryRepository}, nothing is stored (tests and benchmarks)</li>
+ *   <li>SNAPSHOT - {@link SnapshotFileRepository}, the whole data file is rewritten on
+ *       every change</li>
+ *   <li>JOURNAL - {@link JournalRepository}, changes are appended to a log that is
+ *       compacted into the data file in the background</li>
+ * </ul>
+ * Other engines can be plugged in by passing them to the service's constructor.
+ */
+public interface LibraryRepository extends Closeable {
+
+    /**
+     * Where a repository loads data into, and where engines that store the whole data
+     * set at once read it from. Implemented by the service.
+     */
+    interface Target {
+        /** Replace the in-memory data with a fully read snapshot */
+        void restore(LibrarySnapshot snapshot);
+
+        /**
+         * Use a mapped snapshot whose books and members are decoded on first access.
+         * Anything read from it up front must be read before the in-memory data is
+         * changed, since a damaged page is only found when it is read.
+         */
+        void restoreLazy(MappedSnapshot snapshot) throws IOException;
+
+        /** Apply one change recorded after the snapshot was taken */
+        void apply(Mutation mutation);
+
+        /** The complete current data set */
+        LibrarySnapshot capture();
+    }
+
+    /**
+     * Open the engine selected by the config
+     */
+    static LibraryRepository open(PersistenceConfig config) {
+        File directory = new File(config.getDataDirectory());
+        return switch (config.getMode()) {
+            case MEMORY -> new InMemoryRepository();
+            case SNAPSHOT -> new SnapshotFileRepository(directory, config);
+            case JOURNAL -> new JournalRepository(directory, config);
+        };
+    }
+
+    /**
+     * Load the stored data into the target. Called once, before anything is recorded;
+     * the repository may keep the target to {@link Target#capture() capture} data later.
+     *
+     * @param pool threads to decode with, or null to load on the calling thread
+     * @param report where the time spent in each load phase is recorded
+     */
+    void load(Target target, ForkJoinPool pool, LoadReport report) throws IOException;
+
+    /**
+     * Store the changes made by one service operation, returning once they are as
+     * durable as the engine promises
+     */
+    void record(Mutation... mutations) throws IOException;
+
+    /**
+     * Store changes made by a bulk operation that will finish with {@link #checkpoint()}.
+     * Engines that write the whole data set at once can wait for the checkpoint instead.
+     */
+    default void recordBulk(Mutation... mutations) throws IOException {
+        record(mutations);
+    }
+
+    /**
+     * Write out the complete data set now and wait for it to finish
+     */
+    void checkpoint() throws IOException;
+
+    /**
+     * Where old checkouts are archived, or null if this engine does not keep history
+     */
+    HistoryStore getHistory();
+}
@@ -0,0 +1,41 @@
+package com.librarysystem.persistence;
+
+import com.librarysystem.model.Book;
+import com.librarysystem.model.Checkout;
+import com.librarysystem.model.Member;
+import java.util.Collection;
+
+/**
+ * Point-in-time copy of everything the library service persists.
+ */
+public class LibrarySnapshot {
+    private final Collection<Book> books;
+    private final Collection<Member> members;
+    private final Collection<Checkout> checkouts;
+    private final int checkoutCounter;
+
+    public LibrarySnapshot(Collection<Book> books, Collection<Member> members,
+                           Collection<Checkout> checkouts, int checkoutCounter) {
+        this.books = books;
+        this.members = members;
+        this.checkouts = checkouts;
+        this.checkoutCounter = checkoutCounter;
+    }
+
+    // Getters
+    public Collection<Book> getBooks() {
+        return books;
+    }
+
+    public Collection<Member> getMembers() {
+        return members;
+    }
+
+    public Collection<Checkout> getCheckouts() {
+        return checkouts;
+    }
+
+    public int getCheckoutCounter() {
+        return checkoutCounter;
+    }
+}
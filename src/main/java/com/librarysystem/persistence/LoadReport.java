@@ -0,0 +1,69 @@
+package com.librarysystem.persistence;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Time spent in each phase of loading the library data at startup.
+ */
+public class LoadReport {
+    private final List<String> phases;
+    private final List<Long> nanos;
+    private final int threads;
+
+    public LoadReport(int threads) {
+        this.phases = new ArrayList<>();
+        this.nanos = new ArrayList<>();
+        this.threads = threads;
+    }
+
+    /**
+     * Record a phase that started at the given {@link System#nanoTime()} value and has
+     * just finished
+     *
+     * @return the current time, to use as the start of the next phase
+     */
+    public long phase(String name, long startNanos) {
+        long now = System.nanoTime();
+        phases.add(name);
+        nanos.add(now - startNanos);
+        return now;
+    }
+
+    // Getters
+    public List<String> getPhases() {
+        return phases;
+    }
+
+    /**
+     * Duration of the named phase in milliseconds, or 0 if it did not run
+     */
+    public double getMillis(String phase) {
+        int index = phases.indexOf(phase);
+        return index < 0 ? 0 : nanos.get(index) / 1_000_000.0;
+    }
+
+    public double getTotalMillis() {
+        long total = 0;
+        for (long phaseNanos : nanos) {
+            total += phaseNanos;
+        }
+        return total / 1_000_000.0;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < phases.size(); i++) {
+            sb.append(i == 0 ? "" : ", ")
+              .append(phases.get(i))
+              .append(String.format(" %.1f ms", nanos.get(i) / 1_000_000.0));
+        }
+        return String.format("%s (total %.1f ms, %d thread%s)",
+                sb.length() == 0 ? "nothing to load" : sb, getTotalMillis(), threads, threads == 1 ? "" : "s");
+    }
+}
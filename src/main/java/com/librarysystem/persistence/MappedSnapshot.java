@@ -0,0 +1,491 @@
+package com.librarysystem.persistence;
+
+import com.librarysystem.model.Book;
+import com.librarysystem.model.Checkout;
+import com.librarysystem.model.Member;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * Read-only view of a snapshot file mapped into memory.
+ *
+ * Opening only reads the fixed-size header, so it takes the same time no matter how
+ * many records the file holds. Individual books and members are decoded on demand by
+ * binary-searching the per-section offset index written by {@link SnapshotFormat}. A
+ * compressed snapshot cannot be mapped as it is, so it is decompressed into memory when
+ * opened, but its records are still only decoded on demand. The same index lets
+ * {@link #readAll(ForkJoinPool)} split every section into chunks that are decoded on
+ * separate threads.
+ *
+ * Opening checks only the header's checksum. The rest of the file is checked as it is
+ * read, against the checksum of each page it touches, so a lookup checks a few pages
+ * rather than the whole file, and each page is checked once. Files older than version 5
+ * have no page checksums, so the first read from one checks the whole file instead.
+ */
+public class MappedSnapshot {
+    private static final int BOOKS = 0;
+    private static final int MEMBERS = 1;
+    private static final int CHECKOUTS = 2;
+    private static final int CHUNK_SIZE = 8192;  // Records decoded by one task
+
+    private final ByteBuffer buffer;
+    private final int version;
+    private final int checkoutCounter;
+    private final int[] counts;
+    private final long[] dataOffsets;
+    private final long[] indexOffsets;
+    private final int pageSize;  // 0 if the file has no page checksums
+    private final long pageTableOffset;
+    private final AtomicLongArray checkedPages;  // One bit per page whose checksum has been checked
+    private volatile boolean checked;  // Whether the whole file has been checked
+    private long[] copyTotals;  // Available, checked out; null until added up for an old file
+
+    private MappedSnapshot(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.getInt(0) != SnapshotFormat.MAGIC) {
+            throw new IOException("Not a library snapshot");
+        }
+        this.version = buffer.getShort(Integer.BYTES) & 0xFFFF;
+        if (version < 2) {
+            throw new IOException("Snapshot version " + version + " has no index and cannot be mapped");
+        }
+        if (version > SnapshotFormat.VERSION) {
+            throw new IOException("Unsupported snapshot version: " + version);
+        }
+        SnapshotFormat.verifyHeader(buffer, version);
+
+        this.checkoutCounter = buffer.getInt(Integer.BYTES + Short.BYTES);
+        this.counts = new int[SnapshotFormat.SECTION_COUNT];
+        this.dataOffsets = new long[SnapshotFormat.SECTION_COUNT];
+        this.indexOffsets = new long[SnapshotFormat.SECTION_COUNT];
+        for (int section = 0; section < SnapshotFormat.SECTION_COUNT; section++) {
+            int entry = SnapshotFormat.SECTION_TABLE_OFFSET + section * SnapshotFormat.SECTION_ENTRY_SIZE;
+            counts[section] = buffer.getInt(entry);
+            dataOffsets[section] = buffer.getLong(entry + Integer.BYTES);
+            indexOffsets[section] = buffer.getLong(entry + Integer.BYTES + Long.BYTES);
+        }
+        if (version >= 4) {
+            this.copyTotals = new long[] {buffer.getLong(SnapshotFormat.COPY_TOTALS_OFFSET),
+                    buffer.getLong(SnapshotFormat.COPY_TOTALS_OFFSET + Long.BYTES)};
+        }
+        if (version >= 5) {
+            this.pageSize = buffer.getInt(SnapshotFormat.PAGE_TABLE_OFFSET);
+            this.pageTableOffset = buffer.getLong(SnapshotFormat.PAGE_TABLE_OFFSET + Integer.BYTES);
+            if (pageSize <= 0 || pageTableOffset > buffer.limit()) {
+                throw new IOException("Corrupt snapshot page table");
+            }
+            this.checkedPages = new AtomicLongArray((int) ((pageTableOffset / pageSize + 64) / 64));
+        } else {
+            this.pageSize = 0;
+            this.pageTableOffset = 0;
+            this.checkedPages = null;
+        }
+        // Version 2 files have no checksums to check
+        this.checked = version < 3;
+    }
+
+    /**
+     * Map a snapshot file. The file must be version 2 or later and under 2 GB.
+     */
+    public static MappedSnapshot open(File file) throws IOException {
+        return open(file, null);
+    }
+
+    /**
+     * Map a snapshot file, using the pool's threads to decompress it if it is compressed
+     */
+    public static MappedSnapshot open(File file, ForkJoinPool pool) throws IOException {
+        if (CompressedFile.isCompressed(file)) {
+            return new MappedSnapshot(CompressedFile.decompress(file, pool));
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot too large to map: " + file);
+            }
+            // The mapping stays valid after the channel is closed
+            return new MappedSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    // Getters
+    public int getCheckoutCounter() {
+        return checkoutCounter;
+    }
+
+    public int getBookCount() {
+        return counts[BOOKS];
+    }
+
+    public int getMemberCount() {
+        return counts[MEMBERS];
+    }
+
+    public int getCheckoutCount() {
+        return counts[CHECKOUTS];
+    }
+
+    /**
+     * Available copies summed over every book. Files older than version 4 do not store
+     * the copy totals, so the first call adds them up by decoding every book.
+     */
+    public long getAvailableCopies() throws IOException {
+        return copyTotals()[0];
+    }
+
+    /**
+     * Checked-out copies summed over every book, added up like
+     * {@link #getAvailableCopies()} for files older than version 4
+     */
+    public long getCheckedOutCopies() throws IOException {
+        return copyTotals()[1];
+    }
+
+    /**
+     * Check the whole file against its checksum up front, for a caller about to read all
+     * of it. Reads check the pages they touch anyway, but a damaged file is then only
+     * found when the damaged page is reached.
+     */
+    public void verify() throws IOException {
+        if (!checked) {
+            SnapshotFormat.verifyBody(buffer, version);
+            checked = true;
+        }
+    }
+
+    /**
+     * Decode the book with the given ISBN, or return null if the snapshot has none
+     */
+    public Book findBook(String isbn) throws IOException {
+        int position = search(BOOKS, isbn);
+        return position < 0 ? null : BookCodec.INSTANCE.read(inputAt(recordOffset(BOOKS, position)));
+    }
+
+    /**
+     * Decode the member with the given ID, or return null if the snapshot has none
+     */
+    public Member findMember(String memberId) throws IOException {
+        int position = search(MEMBERS, memberId);
+        return position < 0 ? null : MemberCodec.INSTANCE.read(inputAt(recordOffset(MEMBERS, position)));
+    }
+
+    public boolean containsBook(String isbn) throws IOException {
+        return search(BOOKS, isbn) >= 0;
+    }
+
+    public boolean containsMember(String memberId) throws IOException {
+        return search(MEMBERS, memberId) >= 0;
+    }
+
+    /**
+     * Decode every book in ISBN order
+     */
+    public void forEachBook(Consumer<Book> action) throws IOException {
+        forEach(BOOKS, BookCodec.INSTANCE, action);
+    }
+
+    /**
+     * Decode every member in member ID order
+     */
+    public void forEachMember(Consumer<Member> action) throws IOException {
+        forEach(MEMBERS, MemberCodec.INSTANCE, action);
+    }
+
+    /**
+     * Decode every checkout in checkout ID order
+     */
+    public void forEachCheckout(Consumer<Checkout> action) throws IOException {
+        forEach(CHECKOUTS, CheckoutCodec.INSTANCE, action);
+    }
+
+    /**
+     * Iterate books in ISBN order, decoding each one as it is reached
+     */
+    public Iterator<Book> books() {
+        return records(BOOKS, BookCodec.INSTANCE);
+    }
+
+    /**
+     * Iterate members in member ID order, decoding each one as it is reached
+     */
+    public Iterator<Member> members() {
+        return records(MEMBERS, MemberCodec.INSTANCE);
+    }
+
+    /**
+     * Iterate checkouts in checkout ID order, decoding each one as it is reached
+     */
+    public Iterator<Checkout> checkouts() {
+        return records(CHECKOUTS, CheckoutCodec.INSTANCE);
+    }
+
+    /**
+     * Decode the whole snapshot in parallel. The three sections are decoded at the same
+     * time, and each is split into chunks of records. A chunk starts at the file offset
+     * the index gives for its first record, so it never has to read the records before it.
+     * The file is checked against its checksum first.
+     */
+    public LibrarySnapshot readAll(ForkJoinPool pool) throws IOException {
+        verify();
+        Book[] books = new Book[counts[BOOKS]];
+        Member[] members = new Member[counts[MEMBERS]];
+        Checkout[] checkouts = new Checkout[counts[CHECKOUTS]];
+        invoke(pool, new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(new DecodeTask<>(BOOKS, BookCodec.INSTANCE, books, 0, books.length),
+                        new DecodeTask<>(MEMBERS, MemberCodec.INSTANCE, members, 0, members.length),
+                        new DecodeTask<>(CHECKOUTS, CheckoutCodec.INSTANCE, checkouts, 0, checkouts.length));
+            }
+        });
+        return new LibrarySnapshot(Arrays.asList(books), Arrays.asList(members),
+                Arrays.asList(checkouts), checkoutCounter);
+    }
+
+    /**
+     * Decode every checkout in parallel, in checkout ID order
+     */
+    public Checkout[] readCheckouts(ForkJoinPool pool) throws IOException {
+        Checkout[] checkouts = new Checkout[counts[CHECKOUTS]];
+        invoke(pool, new DecodeTask<>(CHECKOUTS, CheckoutCodec.INSTANCE, checkouts, 0, checkouts.length));
+        return checkouts;
+    }
+
+    private void invoke(ForkJoinPool pool, RecursiveAction task) throws IOException {
+        try {
+            pool.invoke(task);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private synchronized long[] copyTotals() throws IOException {
+        if (copyTotals == null) {
+            long[] totals = new long[2];
+            forEachBook(book -> {
+                totals[0] += book.getAvailableCopies();
+                totals[1] += book.getCheckedOutCopies();
+            });
+            copyTotals = totals;
+        }
+        return copyTotals;
+    }
+
+    private <T> void forEach(int section, RecordCodec<T> codec, Consumer<T> action) throws IOException {
+        DataInputStream in = inputAt(dataOffsets[section]);
+        for (int i = 0; i < counts[section]; i++) {
+            action.accept(codec.read(in));
+        }
+    }
+
+    private <T> Iterator<T> records(int section, RecordCodec<T> codec) {
+        DataInputStream in;
+        try {
+            in = inputAt(dataOffsets[section]);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new Iterator<T>() {
+            private int remaining = counts[section];
+
+            @Override
+            public boolean hasNext() {
+                return remaining > 0;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                remaining--;
+                try {
+                    return codec.read(in);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Decodes records {@code from} (inclusive) to {@code to} (exclusive) of a section into
+     * the matching slots of an array, splitting the range in half until it is small enough
+     */
+    private class DecodeTask<T> extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int section;
+        private final RecordCodec<T> codec;
+        private final T[] into;
+        private final int from;
+        private final int to;
+
+        DecodeTask(int section, RecordCodec<T> codec, T[] into, int from, int to) {
+            this.section = section;
+            this.codec = codec;
+            this.into = into;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > CHUNK_SIZE) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new DecodeTask<>(section, codec, into, from, mid),
+                        new DecodeTask<>(section, codec, into, mid, to));
+                return;
+            }
+            if (from == to) {
+                return;
+            }
+
+            try {
+                DataInputStream in = inputAt(recordOffset(section, from));
+                for (int i = from; i < to; i++) {
+                    into[i] = codec.read(in);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Binary search a section's index for a key.
+     *
+     * @return position of the record in key order, or -1 if not found
+     */
+    private int search(int section, String key) throws IOException {
+        int low = 0;
+        int high = counts[section] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            String midKey = Codecs.readString(inputAt(recordOffset(section, mid)));
+            int cmp = midKey.compareTo(key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private long recordOffset(int section, int position) throws IOException {
+        long offset = indexOffsets[section] + (long) position * Long.BYTES;
+        checkPages(offset, Long.BYTES);
+        return buffer.getLong((int) offset);
+    }
+
+    /**
+     * A stream of the file from {@code offset}, checking each page before reading from it
+     */
+    private DataInputStream inputAt(long offset) throws IOException {
+        ByteBuffer view = buffer.duplicate();
+        view.position((int) offset);
+        if (pageSize == 0) {
+            verify();
+        }
+        return new DataInputStream(checked ? new ByteBufferInputStream(view) : new PageCheckingInputStream(view));
+    }
+
+    /**
+     * Check the pages holding {@code length} bytes from {@code offset}, or the whole file
+     * if it has no page checksums
+     */
+    private void checkPages(long offset, int length) throws IOException {
+        if (checked) {
+            return;
+        }
+        if (pageSize == 0) {
+            verify();
+            return;
+        }
+        for (long page = offset / pageSize; page <= (offset + length - 1) / pageSize; page++) {
+            checkPage((int) page);
+        }
+    }
+
+    private void checkPage(int page) throws IOException {
+        int word = page / Long.SIZE;
+        long bit = 1L << (page % Long.SIZE);
+        if ((checkedPages.get(word) & bit) != 0) {
+            return;
+        }
+        int start = (int) Math.max((long) page * pageSize, SnapshotFormat.headerSize(version));
+        int end = (int) Math.min((long) (page + 1) * pageSize, pageTableOffset);
+        int expected = buffer.getInt((int) (pageTableOffset + (long) page * Integer.BYTES));
+        if (SnapshotFormat.checksum(buffer, start, end - start) != expected) {
+            throw new IOException("Snapshot checksum mismatch in page " + page);
+        }
+        checkedPages.getAndAccumulate(word, bit, (bits, added) -> bits | added);
+    }
+
+    /**
+     * Input stream over part of the mapped file that checks each page's checksum the
+     * first time it reads from the page
+     */
+    private class PageCheckingInputStream extends InputStream {
+        private final ByteBuffer view;
+        private int checkedTo;  // End of the checked pages the stream has reached
+
+        PageCheckingInputStream(ByteBuffer view) {
+            this.view = view;
+            this.checkedTo = view.position();
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!view.hasRemaining()) {
+                return -1;
+            }
+            checkPosition();
+            return view.get() & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!view.hasRemaining()) {
+                return -1;
+            }
+            checkPosition();
+            int count = Math.min(len, Math.min(view.remaining(), checkedTo - view.position()));
+            view.get(b, off, count);
+            return count;
+        }
+
+        private void checkPosition() throws IOException {
+            int position = view.position();
+            if (position < checkedTo) {
+                return;
+            }
+            if (position >= pageTableOffset) {
+                // Past the data and index, which only the body checksum covers
+                checkedTo = view.limit();
+                return;
+            }
+            int page = position / pageSize;
+            checkPage(page);
+            checkedTo = (int) Math.min((long) (page + 1) * pageSize, view.limit());
+        }
+    }
+}
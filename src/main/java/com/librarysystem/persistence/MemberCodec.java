@@ -0,0 +1,35 @@
+package com.librarysystem.persistence;
+
+import com.librarysystem.model.Member;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Binary codec for {@link Member} records.
+ */
+public class MemberCodec implements RecordCodec<Member> {
+    public static final MemberCodec INSTANCE = new MemberCodec();
+
+    @Override
+    public void write(DataOutput out, Member member) throws IOException {
+        Codecs.writeString(out, member.getMemberId());
+        Codecs.writeString(out, member.getName());
+        Codecs.writeString(out, member.getEmail());
+        Codecs.writeString(out, member.getPhone());
+        Codecs.writeVarInt(out, member.getMaxCheckouts());
+        Codecs.writeEnum(out, member.getStatus());
+    }
+
+    @Override
+    public Member read(DataInput in) throws IOException {
+        String memberId = Codecs.readString(in);
+        String name = Codecs.readString(in);
+        String email = Codecs.readString(in);
+        String phone = Codecs.readString(in);
+        Member member = new Member(memberId, name, email, phone);
+        member.setMaxCheckouts(Codecs.readVarInt(in));
+        member.setStatus(Codecs.readEnum(in, Member.MembershipStatus.values()));
+        return member;
+    }
+}
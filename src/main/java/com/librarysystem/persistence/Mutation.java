@@ -0,0 +1,120 @@
+package com.librarysystem.persistence;
+
+import com.librarysystem.model.Book;
+import com.librarysystem.model.Checkout;
+import com.librarysystem.model.Member;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A single change to the library data, as written to the journal.
+ * Put mutations carry the full state of the record, so replaying them is idempotent.
+ */
+public final class Mutation {
+
+    public enum Type {
+        PUT_BOOK, REMOVE_BOOK, PUT_MEMBER, REMOVE_MEMBER, PUT_CHECKOUT, SET_COUNTER, REMOVE_CHECKOUT
+    }
+
+    private final Type type;
+    private final Object value;
+
+    private Mutation(Type type, Object value) {
+        this.type = type;
+        this.value = value;
+    }
+
+    public static Mutation putBook(Book book) {
+        return new Mutation(Type.PUT_BOOK, book);
+    }
+
+    public static Mutation removeBook(String isbn) {
+        return new Mutation(Type.REMOVE_BOOK, isbn);
+    }
+
+    public static Mutation putMember(Member member) {
+        return new Mutation(Type.PUT_MEMBER, member);
+    }
+
+    public static Mutation removeMember(String memberId) {
+        return new Mutation(Type.REMOVE_MEMBER, memberId);
+    }
+
+    public static Mutation putCheckout(Checkout checkout) {
+        return new Mutation(Type.PUT_CHECKOUT, checkout);
+    }
+
+    public static Mutation removeCheckout(String checkoutId) {
+        return new Mutation(Type.REMOVE_CHECKOUT, checkoutId);
+    }
+
+    public static Mutation setCounter(int checkoutCounter) {
+        return new Mutation(Type.SET_COUNTER, checkoutCounter);
+    }
+
+    // Getters
+    public Type getType() {
+        return type;
+    }
+
+    public Book getBook() {
+        return (Book) value;
+    }
+
+    public Member getMember() {
+        return (Member) value;
+    }
+
+    public Checkout getCheckout() {
+        return (Checkout) value;
+    }
+
+    /**
+     * Key of the removed record (ISBN, member ID or checkout ID)
+     */
+    public String getKey() {
+        return (String) value;
+    }
+
+    public int getCounter() {
+        return (Integer) value;
+    }
+
+    // ==================== ENCODING ====================
+
+    /**
+     * Write this mutation to the given stream
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        Codecs.writeEnum(out, type);
+        switch (type) {
+            case PUT_BOOK -> BookCodec.INSTANCE.write(out, getBook());
+            case PUT_MEMBER -> MemberCodec.INSTANCE.write(out, getMember());
+            case PUT_CHECKOUT -> CheckoutCodec.INSTANCE.write(out, getCheckout());
+            case REMOVE_BOOK, REMOVE_MEMBER, REMOVE_CHECKOUT -> Codecs.writeString(out, getKey());
+            case SET_COUNTER -> out.writeInt(getCounter());
+        }
+    }
+
+    /**
+     * Read a mutation previously written with {@link #writeTo(DataOutput)}
+     */
+    public static Mutation readFrom(DataInput in) throws IOException {
+        Type type = Codecs.readEnum(in, Type.values());
+        return switch (type) {
+            case PUT_BOOK -> putBook(BookCodec.INSTANCE.read(in));
+            case PUT_MEMBER -> putMember(MemberCodec.INSTANCE.read(in));
+            case PUT_CHECKOUT -> putCheckout(CheckoutCodec.INSTANCE.read(in));
+            case REMOVE_BOOK -> removeBook(Codecs.readString(in));
+            case REMOVE_MEMBER -> removeMember(Codecs.readString(in));
+            case REMOVE_CHECKOUT -> removeCheckout(Codecs.readString(in));
+            case SET_COUNTER -> setCounter(in.readInt());
+        };
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Mutation{type=%s, value=%s}", type, value);
+    }
+}
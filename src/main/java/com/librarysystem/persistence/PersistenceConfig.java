@@ -0,0 +1,291 @@
+package com.librarysystem.persistence;
+
+/**
+ * Settings that control how the library service saves its data.
+ *
+ * Values can be supplied on the command line as system properties, e.g.
+ * {@code java -Dlibrary.persistence.mode=snapshot -cp out com.librarysystem.LibrarySystem}.
+ */
+public class PersistenceConfig {
+
+    public enum Mode {
+        /** Keep everything in memory only; nothing is loaded or saved */
+        MEMORY,
+        /** Rewrite the whole data file after every change (original behaviour) */
+        SNAPSHOT,
+        /** Append each change to a journal; a background thread folds it into the data file */
+        JOURNAL
+    }
+
+    public enum Durability {
+        /** fsync after every single operation */
+        FSYNC_EACH,
+        /** Operations arriving within the commit window share one write and fsync */
+        GROUP_COMMIT,
+        /** Hand writes to the operating system and never fsync */
+        OS_BUFFERED
+    }
+
+    public enum Compression {
+        /** Store snapshots and journal entries as they are */
+        NONE,
+        /** Raw deflate blocks (java.util.zip.Deflater) */
+        DEFLATE,
+        /** Blocks in gzip format, which adds a CRC-32 check of every block */
+        GZIP
+    }
+
+    private static final int DEFAULT_SNAPSHOT_INTERVAL = 1000;
+    private static final int DEFAULT_SNAPSHOT_INTERVAL_SECONDS = 300;
+    private static final long DEFAULT_GROUP_COMMIT_WINDOW_MILLIS = 0;
+    private static final int DEFAULT_HISTORY_AGE_DAYS = 90;
+    private static final String DEFAULT_DATA_DIRECTORY = ".";
+    private static final int DEFAULT_COMPRESSION_LEVEL = 6;
+
+    private Mode mode;
+    private int snapshotInterval;
+    private int snapshotIntervalSeconds;
+    private Durability durability;
+    private long groupCommitWindowMillis;
+    private boolean lazyLoad;
+    private int loadThreads;
+    private int historyAgeDays;
+    private String dataDirectory;
+    private Compression compression;
+    private int compressionLevel;
+
+    public PersistenceConfig() {
+        this.mode = Mode.JOURNAL;
+        this.snapshotInterval = DEFAULT_SNAPSHOT_INTERVAL;
+        this.snapshotIntervalSeconds = DEFAULT_SNAPSHOT_INTERVAL_SECONDS;
+        this.durability = Durability.GROUP_COMMIT;
+        this.groupCommitWindowMillis = DEFAULT_GROUP_COMMIT_WINDOW_MILLIS;
+        this.historyAgeDays = DEFAULT_HISTORY_AGE_DAYS;
+        this.dataDirectory = DEFAULT_DATA_DIRECTORY;
+        this.compression = Compression.NONE;
+        this.compressionLevel = DEFAULT_COMPRESSION_LEVEL;
+    }
+
+    /**
+     * Build a config from {@code library.persistence.*} system properties, using defaults
+     * for anything not set.
+     */
+    public static PersistenceConfig fromSystemProperties() {
+        PersistenceConfig config = new PersistenceConfig();
+
+        String mode = System.getProperty("library.persistence.mode");
+        if (mode != null) {
+            config.setMode(Mode.valueOf(mode.trim().toUpperCase()));
+        }
+
+        String interval = System.getProperty("library.persistence.snapshotInterval");
+        if (interval != null) {
+            config.setSnapshotInterval(Integer.parseInt(interval.trim()));
+        }
+
+        String intervalSeconds = System.getProperty("library.persistence.snapshotIntervalSeconds");
+        if (intervalSeconds != null) {
+            config.setSnapshotIntervalSeconds(Integer.parseInt(intervalSeconds.trim()));
+        }
+
+        String durability = System.getProperty("library.persistence.durability");
+        if (durability != null) {
+            config.setDurability(Durability.valueOf(durability.trim().toUpperCase()));
+        }
+
+        String window = System.getProperty("library.persistence.groupCommitWindowMillis");
+        if (window != null) {
+            config.setGroupCommitWindowMillis(Long.parseLong(window.trim()));
+        }
+
+        String lazyLoad = System.getProperty("library.persistence.lazyLoad");
+        if (lazyLoad != null) {
+            config.setLazyLoad(Boolean.parseBoolean(lazyLoad.trim()));
+        }
+
+        String loadThreads = System.getProperty("library.persistence.loadThreads");
+        if (loadThreads != null) {
+            config.setLoadThreads(Integer.parseInt(loadThreads.trim()));
+        }
+
+        String historyAge = System.getProperty("library.persistence.historyAgeDays");
+        if (historyAge != null) {
+            config.setHistoryAgeDays(Integer.parseInt(historyAge.trim()));
+        }
+
+        String dataDirectory = System.getProperty("library.persistence.dataDirectory");
+        if (dataDirectory != null) {
+            config.setDataDirectory(dataDirectory.trim());
+        }
+
+        String compression = System.getProperty("library.persistence.compression");
+        if (compression != null) {
+            config.setCompression(Compression.valueOf(compression.trim().toUpperCase()));
+        }
+
+        String compressionLevel = System.getProperty("library.persistence.compressionLevel");
+        if (compressionLevel != null) {
+            config.setCompressionLevel(Integer.parseInt(compressionLevel.trim()));
+        }
+
+        return config;
+    }
+
+    // Getters
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Number of journal entries written before a new snapshot is taken in the background
+     */
+    public int getSnapshotInterval() {
+        return snapshotInterval;
+    }
+
+    /**
+     * Longest time a journal entry waits before a background snapshot includes it
+     */
+    public int getSnapshotIntervalSeconds() {
+        return snapshotIntervalSeconds;
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * How long the group commit flusher waits for more operations before writing a batch.
+     * With 0, a batch is whatever arrived while the previous fsync was in progress.
+     */
+    public long getGroupCommitWindowMillis() {
+        return groupCommitWindowMillis;
+    }
+
+    /**
+     * Whether the snapshot is memory-mapped at startup and books and members are only
+     * decoded when first used, instead of all being read up front
+     */
+    public boolean isLazyLoad() {
+        return lazyLoad;
+    }
+
+    /**
+     * Number of threads used to decode the snapshot at startup; 0 means one per core
+     * and 1 loads everything on the calling thread
+     */
+    public int getLoadThreads() {
+        return loadThreads;
+    }
+
+    /**
+     * Thread count to actually use for loading, with 0 resolved to the number of cores
+     */
+    public int getEffectiveLoadThreads() {
+        return loadThreads == 0 ? Runtime.getRuntime().availableProcessors() : loadThreads;
+    }
+
+    /**
+     * Days after being returned that a checkout is moved out of memory into the history
+     * file
+     */
+    public int getHistoryAgeDays() {
+        return historyAgeDays;
+    }
+
+    /**
+     * Directory the data, journal and history files are kept in
+     */
+    public String getDataDirectory() {
+        return dataDirectory;
+    }
+
+    /**
+     * How snapshots and large journal entries are compressed
+     */
+    public Compression getCompression() {
+        return compression;
+    }
+
+    /**
+     * Compression level from 1 (fastest) to 9 (smallest)
+     */
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    // Setters
+    public void setMode(Mode mode) {
+        if (mode == null) {
+            throw new IllegalArgumentException("Mode cannot be null");
+        }
+        this.mode = mode;
+    }
+
+    public void setSnapshotInterval(int snapshotInterval) {
+        if (snapshotInterval < 1) {
+            throw new IllegalArgumentException("Snapshot interval must be at least 1");
+        }
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    public void setSnapshotIntervalSeconds(int snapshotIntervalSeconds) {
+        if (snapshotIntervalSeconds < 1) {
+            throw new IllegalArgumentException("Snapshot interval must be at least 1 second");
+        }
+        this.snapshotIntervalSeconds = snapshotIntervalSeconds;
+    }
+
+    public void setDurability(Durability durability) {
+        if (durability == null) {
+            throw new IllegalArgumentException("Durability cannot be null");
+        }
+        this.durability = durability;
+    }
+
+    public void setGroupCommitWindowMillis(long groupCommitWindowMillis) {
+        if (groupCommitWindowMillis < 0) {
+            throw new IllegalArgumentException("Group commit window cannot be negative");
+        }
+        this.groupCommitWindowMillis = groupCommitWindowMillis;
+    }
+
+    public void setLazyLoad(boolean lazyLoad) {
+        this.lazyLoad = lazyLoad;
+    }
+
+    public void setHistoryAgeDays(int historyAgeDays) {
+        if (historyAgeDays < 0) {
+            throw new IllegalArgumentException("History age cannot be negative");
+        }
+        this.historyAgeDays = historyAgeDays;
+    }
+
+    public void setLoadThreads(int loadThreads) {
+        if (loadThreads < 0) {
+            throw new IllegalArgumentException("Load threads cannot be negative");
+        }
+        this.loadThreads = loadThreads;
+    }
+
+    public void setDataDirectory(String dataDirectory) {
+        if (dataDirectory == null || dataDirectory.isEmpty()) {
+            throw new IllegalArgumentException("Data directory cannot be empty");
+        }
+        this.dataDirectory = dataDirectory;
+    }
+
+    public void setCompression(Compression compression) {
+        if (compression == null) {
+            throw new IllegalArgumentException("Compression cannot be null");
+        }
+        this.compression = compression;
+    }
+
+    public void setCompressionLevel(int compressionLevel) {
+        if (compressionLevel < 1 || compressionLevel > 9) {
+            throw new IllegalArgumentException("Compression level must be between 1 and 9");
+        }
+        this.compressionLevel = compressionLevel;
+    }
+}
@@ -0,0 +1,22 @@
+package com.librarysystem.persistence;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Reads and writes one kind of record in the compact binary format used by
+ * snapshots and the journal.
+ */
+public interface RecordCodec<T> {
+
+    /**
+     * Write a record
+     */
+    void write(DataOutput out, T value) throws IOException;
+
+    /**
+     * Read a record previously written with {@link #write(DataOutput, Object)}
+     */
+    T read(DataInput in) throws IOException;
+}
@@ -0,0 +1,98 @@
+package com.librarysystem.persistence;
+
+import com.librarysystem.model.Book;
+import com.librarysystem.model.Checkout;
+import com.librarysystem.model.Member;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Converts data files written with Java serialization by older versions of the
+ * library system into the binary snapshot format.
+ *
+ * Usage: {@code java -cp out com.librarysystem.persistence.SnapshotConverter library_data.ser library_data.snapshot}
+ */
+public final class SnapshotConverter {
+    private static final String LEGACY_CLASS_NAME = "com.librarysystem.service.LibraryService$LibraryData";
+
+    private SnapshotConverter() {
+    }
+
+    /**
+     * Read a Java-serialized data file
+     */
+    public static LibrarySnapshot readLegacy(File file) throws IOException {
+        try (ObjectInputStream in = new LegacyInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            LegacyLibraryData data = (LegacyLibraryData) in.readObject();
+            return new LibrarySnapshot(data.books, data.members, data.checkouts, data.checkoutCounter);
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Not a library data file: " + file, e);
+        }
+    }
+
+    /**
+     * Convert a Java-serialized data file into a binary snapshot
+     */
+    public static LibrarySnapshot convert(File legacyFile, File snapshotFile) throws IOException {
+        LibrarySnapshot snapshot = readLegacy(legacyFile);
+        SnapshotFormat.write(snapshotFile, snapshot, true);
+        return snapshot;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: SnapshotConverter <legacy .ser file> <snapshot file>");
+            System.exit(1);
+        }
+
+        File legacyFile = new File(args[0]);
+        File snapshotFile = new File(args[1]);
+
+        long start = System.nanoTime();
+        LibrarySnapshot snapshot = convert(legacyFile, snapshotFile);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        System.out.printf("Converted %d books, %d members, %d checkouts in %d ms%n",
+                snapshot.getBooks().size(), snapshot.getMembers().size(),
+                snapshot.getCheckouts().size(), elapsedMillis);
+        System.out.printf("Size: %,d bytes -> %,d bytes%n", legacyFile.length(), snapshotFile.length());
+    }
+
+    /**
+     * Reads the old {@code LibraryService.LibraryData} holder as {@link LegacyLibraryData},
+     * which has the same serialized fields.
+     */
+    private static class LegacyInputStream extends ObjectInputStream {
+        LegacyInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected ObjectStreamClass readClassDescriptor() throws IOException, ClassNotFoundException {
+            ObjectStreamClass descriptor = super.readClassDescriptor();
+            if (LEGACY_CLASS_NAME.equals(descriptor.getName())) {
+                return ObjectStreamClass.lookup(LegacyLibraryData.class);
+            }
+            return descriptor;
+        }
+    }
+
+    /**
+     * Field-for-field copy of the serializable holder old versions wrote
+     */
+    private static class LegacyLibraryData implements Serializable {
+        private static final long serialVersionUID = 1L;
+        List<Book> books;
+        List<Member> members;
+        List<Checkout> checkouts;
+        int checkoutCounter;
+    }
+}
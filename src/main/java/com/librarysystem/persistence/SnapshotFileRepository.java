@@ -0,0 +1,139 @@
+package com.librarysystem.persistence;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Storage engine that keeps everything in a single snapshot file and rewrites the whole
+ * file after every change. Simple and always up to date on disk, but each change costs
+ * time proportional to the size of the library.
+ *
+ * A data file from an older version (Java serialization) is converted to the snapshot
+ * format the first time it is loaded and kept as a backup.
+ */
+public class SnapshotFileRepository implements LibraryRepository {
+    public static final String DATA_FILE = "library_data.snapshot";
+    public static final String LEGACY_DATA_FILE = "library_data.ser";
+    public static final String HISTORY_FILE = "library_data.history";
+
+    protected final File directory;
+    protected final File snapshotFile;
+    protected final PersistenceConfig config;
+    private final HistoryStore history;
+    private Target target;
+
+    public SnapshotFileRepository(File directory, PersistenceConfig config) {
+        this.directory = directory;
+        this.snapshotFile = new File(directory, DATA_FILE);
+        this.config = config;
+        this.history = new HistoryStore(new File(directory, HISTORY_FILE), isSync());
+    }
+
+    /**
+     * Read the snapshot file into the target, decoding it in parallel if a pool is given
+     * and the file supports it. If the snapshot fails its checksum it is set aside and the
+     * previous snapshot is loaded instead.
+     */
+    @Override
+    public void load(Target target, ForkJoinPool pool, LoadReport report) throws IOException {
+        this.target = target;
+        File previousFile = SnapshotFormat.previousFile(snapshotFile);
+        File legacyFile = new File(directory, LEGACY_DATA_FILE);
+
+        if (!snapshotFile.exists() && previousFile.exists()) {
+            // Crashed after moving the old snapshot aside but before moving the new one in
+            Files.move(previousFile.toPath(), snapshotFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        if (snapshotFile.exists()) {
+            try {
+                restoreSnapshot(target, pool, report);
+            } catch (IOException e) {
+                // Keep the damaged file for inspection, out of the way of the next snapshot
+                Files.move(snapshotFile.toPath(), new File(directory, DATA_FILE + ".damaged").toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+                if (!previousFile.exists()) {
+                    throw e;
+                }
+                System.err.println("Snapshot is damaged (" + e.getMessage() + "), recovering from "
+                        + previousFile.getName());
+                Files.move(previousFile.toPath(), snapshotFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                restoreSnapshot(target, pool, report);
+            }
+        } else if (legacyFile.exists()) {
+            long start = System.nanoTime();
+            LibrarySnapshot snapshot = SnapshotConverter.convert(legacyFile, snapshotFile);
+            Files.move(legacyFile.toPath(), new File(directory, LEGACY_DATA_FILE + ".bak").toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+            start = report.phase("convert legacy data", start);
+            target.restore(snapshot);
+            report.phase("restore maps", start);
+        }
+    }
+
+    /**
+     * Read and check the snapshot file completely before handing anything to the target,
+     * so a damaged file leaves the target untouched. A lazily loaded file is not checked
+     * up front, which would take time in proportion to its size: the mapped snapshot
+     * checks each page as it is read, and the target reads what it loads at startup
+     * before changing anything.
+     */
+    private void restoreSnapshot(Target target, ForkJoinPool pool, LoadReport report) throws IOException {
+        long start = System.nanoTime();
+        if (config.isLazyLoad() && SnapshotFormat.supportsMapping(snapshotFile)) {
+            MappedSnapshot mapped = MappedSnapshot.open(snapshotFile, pool);
+            start = report.phase("map snapshot", start);
+            target.restoreLazy(mapped);
+            report.phase("restore checkouts", start);
+            return;
+        }
+
+        LibrarySnapshot snapshot = pool != null && SnapshotFormat.supportsMapping(snapshotFile)
+                ? MappedSnapshot.open(snapshotFile, pool).readAll(pool)
+                : SnapshotFormat.read(snapshotFile);
+        start = report.phase("read snapshot", start);
+        target.restore(snapshot);
+        report.phase("restore maps", start);
+    }
+
+    /**
+     * Rewrite the snapshot file with the complete current data
+     */
+    @Override
+    public void record(Mutation... mutations) throws IOException {
+        checkpoint();
+    }
+
+    /**
+     * Bulk changes are written by the checkpoint that ends the bulk operation
+     */
+    @Override
+    public void recordBulk(Mutation... mutations) throws IOException {
+    }
+
+    @Override
+    public void checkpoint() throws IOException {
+        SnapshotFormat.write(snapshotFile, target.capture(), isSync(),
+                config.getCompression(), config.getCompressionLevel());
+    }
+
+    @Override
+    public HistoryStore getHistory() {
+        return history;
+    }
+
+    @Override
+    public void close() throws IOException {
+        history.close();
+    }
+
+    /**
+     * Whether files should be fsynced, which every durability level but OS_BUFFERED asks for
+     */
+    protected boolean isSync() {
+        return config.getDurability() != PersistenceConfig.Durability.OS_BUFFERED;
+    }
+}
@@ -0,0 +1,464 @@
+package com.librarysystem.persistence;
+
+import com.librarysystem.model.Book;
+import com.librarysystem.model.Checkout;
+import com.librarysystem.model.Member;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+
+/**
+ * Versioned binary snapshot file format.
+ *
+ * <pre>
+ * int   magic ("LIBS")
+ * short version
+ * int   checkout counter
+ * section table, one entry each for books, members and checkouts:
+ *       int count, long data offset, long index offset
+ * long  available copies, summed over every book
+ * long  checked-out copies, summed over every book
+ * int   page size
+ * long  page table offset
+ * int   body checksum (CRC-32C of everything after the header)
+ * int   header checksum (CRC-32C of the header up to this field)
+ * data:  the records of each section, sorted by key
+ * index: for each section, one long file offset per record, in key order
+ * pages: one int CRC-32C per page of the data and index
+ * </pre>
+ * Records are encoded with {@link BookCodec}, {@link MemberCodec} and {@link CheckoutCodec};
+ * the first field of every record is its key (ISBN, member ID or checkout ID). The index
+ * lets {@link MappedSnapshot} binary-search a record without reading the whole file.
+ * The copy totals let a lazily loaded library report its statistics without decoding
+ * every book. The page table splits the data and index into fixed-size pages, counted
+ * from the start of the file and cut short by the header and the table, so a mapped
+ * snapshot can check just the pages a lookup reads instead of the whole file. Version 1
+ * files (no section table or index), version 2 files (no checksums), version 3 files
+ * (no copy totals) and version 4 files (no page table) can still be read.
+ *
+ * A new snapshot is written to a temporary file and renamed into place; the snapshot it
+ * replaces is kept as {@link #previousFile(File)}, so a snapshot that fails its checksum
+ * can be recovered from the one before it.
+ *
+ * A snapshot can be written compressed, in which case the layout above is wrapped in a
+ * {@link CompressedFile}. Offsets in the section table and index always refer to the
+ * uncompressed data. Compressed and plain snapshots are told apart by their magic number,
+ * so either kind can be read whatever the current setting is.
+ */
+public final class SnapshotFormat {
+    public static final int MAGIC = 0x4C494253;
+    public static final int VERSION = 5;
+    static final int SECTION_COUNT = 3;
+    static final int SECTION_TABLE_OFFSET = Integer.BYTES + Short.BYTES + Integer.BYTES;
+    static final int SECTION_ENTRY_SIZE = Integer.BYTES + Long.BYTES + Long.BYTES;
+    static final int COPY_TOTALS_OFFSET = SECTION_TABLE_OFFSET + SECTION_COUNT * SECTION_ENTRY_SIZE;
+    static final int PAGE_TABLE_OFFSET = COPY_TOTALS_OFFSET + Long.BYTES + Long.BYTES;
+    static final int CHECKSUM_OFFSET = PAGE_TABLE_OFFSET + Integer.BYTES + Long.BYTES;
+    static final int HEADER_SIZE = CHECKSUM_OFFSET + Integer.BYTES + Integer.BYTES;
+    static final int PAGE_SIZE = 4096;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private SnapshotFormat() {
+    }
+
+    /**
+     * Write a snapshot. The data goes to a temporary file first and is renamed over
+     * {@code file} only once complete, so readers never see a half-written snapshot.
+     *
+     * @param sync fsync the file before renaming it into place
+     */
+    public static void write(File file, LibrarySnapshot snapshot, boolean sync) throws IOException {
+        write(file, snapshot, sync, PersistenceConfig.Compression.NONE, 0);
+    }
+
+    /**
+     * Write a snapshot, compressed with the given codec and level
+     */
+    public static void write(File file, LibrarySnapshot snapshot, boolean sync,
+                             PersistenceConfig.Compression compression, int level) throws IOException {
+        List<Book> books = new ArrayList<>(snapshot.getBooks());
+        books.sort(Comparator.comparing(Book::getIsbn));
+        List<Member> members = new ArrayList<>(snapshot.getMembers());
+        members.sort(Comparator.comparing(Member::getMemberId));
+        List<Checkout> checkouts = new ArrayList<>(snapshot.getCheckouts());
+        checkouts.sort(Comparator.comparing(Checkout::getCheckoutId));
+
+        writeSorted(file, books.iterator(), members.iterator(), checkouts.iterator(),
+                snapshot.getCheckoutCounter(), sync, compression, level);
+    }
+
+    /**
+     * Write a snapshot from records that are already sorted by key. The records are
+     * streamed straight to disk, so the caller never needs them all in memory at once.
+     */
+    public static void writeSorted(File file, Iterator<Book> books, Iterator<Member> members,
+                                   Iterator<Checkout> checkouts, int checkoutCounter, boolean sync,
+                                   PersistenceConfig.Compression compression, int level) throws IOException {
+        File tempFile = new File(file.getPath() + ".tmp");
+
+        try (FileOutputStream fileOut = new FileOutputStream(tempFile)) {
+            CompressedFile.Writer blocks = compression != PersistenceConfig.Compression.NONE
+                    ? new CompressedFile.Writer(fileOut.getChannel(), compression, level)
+                    : null;
+            CountingOutputStream counter = new CountingOutputStream(
+                    new BufferedOutputStream(blocks != null ? blocks : fileOut, BUFFER_SIZE));
+            DataOutputStream out = new DataOutputStream(counter);
+            out.write(new byte[HEADER_SIZE]);  // Filled in once the offsets are known
+            counter.resetChecksum();
+            counter.startPages();
+
+            long[] copies = new long[2];  // Available, checked out
+            Iterator<Book> countedBooks = new Iterator<Book>() {
+                @Override
+                public boolean hasNext() {
+                    return books.hasNext();
+                }
+
+                @Override
+                public Book next() {
+                    Book book = books.next();
+                    copies[0] += book.getAvailableCopies();
+                    copies[1] += book.getCheckedOutCopies();
+                    return book;
+                }
+            };
+
+            long[] dataOffsets = new long[SECTION_COUNT];
+            long[][] recordOffsets = new long[SECTION_COUNT][];
+            dataOffsets[0] = counter.getCount();
+            recordOffsets[0] = writeRecords(out, counter, BookCodec.INSTANCE, countedBooks);
+            dataOffsets[1] = counter.getCount();
+            recordOffsets[1] = writeRecords(out, counter, MemberCodec.INSTANCE, members);
+            dataOffsets[2] = counter.getCount();
+            recordOffsets[2] = writeRecords(out, counter, CheckoutCodec.INSTANCE, checkouts);
+
+            long[] indexOffsets = new long[SECTION_COUNT];
+            for (int section = 0; section < SECTION_COUNT; section++) {
+                indexOffsets[section] = counter.getCount();
+                for (long offset : recordOffsets[section]) {
+                    out.writeLong(offset);
+                }
+            }
+            out.flush();
+            int[] pageChecksums = counter.finishPages();
+            long pageTableOffset = counter.getCount();
+            for (int pageChecksum : pageChecksums) {
+                out.writeInt(pageChecksum);
+            }
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putShort((short) VERSION);
+            header.putInt(checkoutCounter);
+            for (int section = 0; section < SECTION_COUNT; section++) {
+                header.putInt(recordOffsets[section].length);
+                header.putLong(dataOffsets[section]);
+                header.putLong(indexOffsets[section]);
+            }
+            header.putLong(copies[0]);
+            header.putLong(copies[1]);
+            header.putInt(PAGE_SIZE);
+            header.putLong(pageTableOffset);
+            header.putInt(counter.getChecksum());
+            header.putInt(checksum(header, 0, CHECKSUM_OFFSET + Integer.BYTES));
+            header.flip();
+            if (blocks != null) {
+                blocks.finish(header);
+            } else {
+                FileChannel channel = fileOut.getChannel();
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+            }
+
+            if (sync) {
+                fileOut.getFD().sync();
+            }
+        }
+
+        if (file.exists()) {
+            Files.move(file.toPath(), previousFile(file).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        Files.move(tempFile.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Where the snapshot replaced by the latest write is kept
+     */
+    public static File previousFile(File file) {
+        return new File(file.getPath() + ".prev");
+    }
+
+    /**
+     * Read a whole snapshot written with {@link #write(File, LibrarySnapshot, boolean)},
+     * checking it against its checksums
+     */
+    public static LibrarySnapshot read(File file) throws IOException {
+        CRC32C crc = new CRC32C();
+        try (CheckedInputStream checked = new CheckedInputStream(openInput(file), crc);
+             DataInputStream in = new DataInputStream(checked)) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a library snapshot: " + file);
+            }
+            int version = in.readUnsignedShort();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported snapshot version: " + version);
+            }
+
+            int checkoutCounter = in.readInt();
+            int[] counts = new int[SECTION_COUNT];
+            if (version >= 2) {
+                // Sections are stored back to back right after the table, so the
+                // offsets are not needed for a sequential read
+                for (int section = 0; section < SECTION_COUNT; section++) {
+                    counts[section] = in.readInt();
+                    in.readLong();
+                    in.readLong();
+                }
+            }
+            if (version >= 4) {
+                // The copy totals are for lazy loading; a full read counts the books itself
+                in.readLong();
+                in.readLong();
+            }
+            if (version >= 5) {
+                // Pages are for checking part of a mapped file; the body checksum covers them
+                in.readInt();
+                in.readLong();
+            }
+            int bodyChecksum = 0;
+            if (version >= 3) {
+                bodyChecksum = in.readInt();
+                int headerChecksum = (int) crc.getValue();
+                if (in.readInt() != headerChecksum) {
+                    throw new IOException("Snapshot header checksum mismatch: " + file);
+                }
+                crc.reset();
+            }
+
+            List<Book> books = readSection(in, BookCodec.INSTANCE, version >= 2 ? counts[0] : in.readInt());
+            List<Member> members = readSection(in, MemberCodec.INSTANCE, version >= 2 ? counts[1] : in.readInt());
+            List<Checkout> checkouts = readSection(in, CheckoutCodec.INSTANCE, version >= 2 ? counts[2] : in.readInt());
+            if (version >= 3) {
+                in.transferTo(OutputStream.nullOutputStream());  // The index is covered by the checksum too
+                if ((int) crc.getValue() != bodyChecksum) {
+                    throw new IOException("Snapshot checksum mismatch: " + file);
+                }
+            }
+            return new LibrarySnapshot(books, members, checkouts, checkoutCounter);
+        }
+    }
+
+    /**
+     * Check the header checksum of a snapshot held in a buffer. Older versions have none.
+     */
+    static void verifyHeader(ByteBuffer buffer, int version) throws IOException {
+        int checksumOffset = checksumOffset(version);
+        if (version >= 3 && buffer.getInt(checksumOffset + Integer.BYTES)
+                != checksum(buffer, 0, checksumOffset + Integer.BYTES)) {
+            throw new IOException("Snapshot header checksum mismatch");
+        }
+    }
+
+    /**
+     * Check the checksum of everything after the header of a snapshot held in a buffer
+     */
+    static void verifyBody(ByteBuffer buffer, int version) throws IOException {
+        int headerSize = headerSize(version);
+        if (version >= 3 && buffer.getInt(checksumOffset(version))
+                != checksum(buffer, headerSize, buffer.limit() - headerSize)) {
+            throw new IOException("Snapshot checksum mismatch");
+        }
+    }
+
+    /**
+     * Where the body checksum is in the header of the given version, which grew the
+     * copy totals in front of it in version 4 and the page table's place in version 5
+     */
+    static int checksumOffset(int version) {
+        if (version >= 5) {
+            return CHECKSUM_OFFSET;
+        }
+        return version >= 4 ? PAGE_TABLE_OFFSET : COPY_TOTALS_OFFSET;
+    }
+
+    /**
+     * Size of the header of the given version
+     */
+    static int headerSize(int version) {
+        return checksumOffset(version) + Integer.BYTES + Integer.BYTES;
+    }
+
+    static int checksum(ByteBuffer buffer, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(offset, length));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Check whether a file is a snapshot that {@link MappedSnapshot} can open
+     */
+    public static boolean supportsMapping(File file) throws IOException {
+        long length = CompressedFile.isCompressed(file) ? CompressedFile.uncompressedLength(file) : file.length();
+        try (DataInputStream in = new DataInputStream(openInput(file))) {
+            return in.readInt() == MAGIC && in.readUnsignedShort() >= 2
+                    && length <= Integer.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Check whether a snapshot file is compressed
+     */
+    public static boolean isCompressed(File file) throws IOException {
+        return CompressedFile.isCompressed(file);
+    }
+
+    /**
+     * Open a snapshot for sequential reading, decompressing it if needed
+     */
+    private static InputStream openInput(File file) throws IOException {
+        if (CompressedFile.isCompressed(file)) {
+            return CompressedFile.openStream(file);
+        }
+        return new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
+    }
+
+    private static <T> long[] writeRecords(DataOutputStream out, CountingOutputStream counter,
+                                           RecordCodec<T> codec, Iterator<T> records) throws IOException {
+        long[] offsets = new long[1024];
+        int count = 0;
+        while (records.hasNext()) {
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+            }
+            offsets[count++] = counter.getCount();
+            codec.write(out, records.next());
+        }
+        return Arrays.copyOf(offsets, count);
+    }
+
+    private static <T> List<T> readSection(DataInputStream in, RecordCodec<T> codec, int count) throws IOException {
+        if (count < 0) {
+            throw new IOException("Corrupt snapshot section size: " + count);
+        }
+        List<T> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            records.add(codec.read(in));
+        }
+        return records;
+    }
+
+    /**
+     * Output stream that tracks how many bytes have passed through it and their checksum,
+     * and between {@link #startPages()} and {@link #finishPages()} the checksum of each
+     * page
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+        private final CRC32C crc = new CRC32C();
+        private final CRC32C pageCrc = new CRC32C();
+        private long count;
+        private boolean paging;
+        private int[] pageChecksums = new int[64];
+        private int pages;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            crc.update(b);
+            count++;
+            if (paging) {
+                pageCrc.update(b);
+                if (count % PAGE_SIZE == 0) {
+                    endPage();
+                }
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            crc.update(b, off, len);
+            if (!paging) {
+                count += len;
+                return;
+            }
+            while (len > 0) {
+                int chunk = (int) Math.min(len, PAGE_SIZE - count % PAGE_SIZE);
+                pageCrc.update(b, off, chunk);
+                count += chunk;
+                off += chunk;
+                len -= chunk;
+                if (count % PAGE_SIZE == 0) {
+                    endPage();
+                }
+            }
+        }
+
+        /**
+         * Start a checksum for each page from here on
+         */
+        void startPages() {
+            paging = true;
+            pageCrc.reset();
+        }
+
+        /**
+         * Stop checksumming pages, ending the last one where it is
+         *
+         * @return the checksum of each page, in order
+         */
+        int[] finishPages() {
+            if (count % PAGE_SIZE != 0) {
+                endPage();
+            }
+            paging = false;
+            return Arrays.copyOf(pageChecksums, pages);
+        }
+
+        private void endPage() {
+            if (pages == pageChecksums.length) {
+                pageChecksums = Arrays.copyOf(pageChecksums, pages * 2);
+            }
+            pageChecksums[pages++] = (int) pageCrc.getValue();
+            pageCrc.reset();
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        int getChecksum() {
+            return (int) crc.getValue();
+        }
+
+        void resetChecksum() {
+            crc.reset();
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package com.librarysystem.persistence;
+
+import com.librarysystem.model.Book;
+import com.librarysystem.model.Checkout;
+import com.librarysystem.model.Member;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Background thread that keeps the snapshot file up to date without blocking the service.
+ *
+ * A snapshot is taken by sealing the active journal segment, which is the only step that
+ * touches shared state and is O(1). The sealed segments are an immutable, point-in-time
+ * record of every change since the previous snapshot, so the thread can fold them into a
+ * new snapshot on its own: it reads the changes into a small sorted delta, streams the
+ * previous snapshot (already sorted by key) and merges the two into the new file. The
+ * service's maps are never read, so checkouts and returns carry on while it runs.
+ *
+ * Sealed segments are only deleted once the snapshot after the one that folded them in
+ * has been written. The previous snapshot plus the journal therefore always describe the
+ * current state as well, which is what loading falls back on if the latest snapshot is
+ * damaged.
+ *
+ * A snapshot is taken once {@code snapshotInterval} mutations have been recorded, or
+ * {@code snapshotIntervalSeconds} after the first unsnapshotted mutation, whichever
+ * comes first.
+ */
+public class Snapshotter implements Closeable {
+    private final File snapshotFile;
+    private final Journal journal;
+    private final int mutationThreshold;
+    private final long intervalMillis;
+    private final boolean sync;
+    private final PersistenceConfig.Compression compression;
+    private final int compressionLevel;
+    private final Thread thread;
+    private int mutationsSinceSnapshot;
+    private long firstMutationTime;
+    private boolean requested;
+    private boolean running;
+    private boolean closed;
+    private long completedSnapshots;
+    private long foldedSegment;  // Last segment folded into the current snapshot by this thread
+    private IOException lastError;
+
+    public Snapshotter(File snapshotFile, Journal journal, PersistenceConfig config) {
+        this.snapshotFile = snapshotFile;
+        this.journal = journal;
+        this.mutationThreshold = config.getSnapshotInterval();
+        this.intervalMillis = config.getSnapshotIntervalSeconds() * 1000L;
+        this.sync = config.getDurability() != PersistenceConfig.Durability.OS_BUFFERED;
+        this.compression = config.getCompression();
+        this.compressionLevel = config.getCompressionLevel();
+        this.thread = new Thread(this::run, "library-snapshotter");
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * Note that a mutation was written to the journal
+     */
+    public synchronized void mutationRecorded() {
+        if (mutationsSinceSnapshot++ == 0) {
+            firstMutationTime = System.currentTimeMillis();
+        }
+        if (mutationsSinceSnapshot >= mutationThreshold) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Take a snapshot covering every mutation recorded so far and wait for it to finish
+     */
+    public synchronized void snapshotNow() throws IOException {
+        // A snapshot already in progress may have sealed its segments before our
+        // mutations, so wait for the one after it
+        long target = completedSnapshots + (running ? 2 : 1);
+        requested = true;
+        notifyAll();
+        while (completedSnapshots < target) {
+            if (closed) {
+                throw new IOException("Snapshotter is closed");
+            }
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted waiting for snapshot", e);
+            }
+        }
+        if (lastError != null) {
+            throw lastError;
+        }
+    }
+
+    /**
+     * Stop the background thread. Mutations not yet in a snapshot stay in the journal.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            synchronized (this) {
+                while (!closed && !isDue()) {
+                    try {
+                        if (mutationsSinceSnapshot > 0) {
+                            wait(Math.max(1, firstMutationTime + intervalMillis - System.currentTimeMillis()));
+                        } else {
+                            wait();
+                        }
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (closed) {
+                    return;
+                }
+                requested = false;
+                running = true;
+                mutationsSinceSnapshot = 0;
+            }
+
+            IOException error = null;
+            try {
+                takeSnapshot();
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Error writing snapshot: " + e.getMessage());
+                error = e instanceof IOException ? (IOException) e : new IOException(e);
+            }
+
+            synchronized (this) {
+                running = false;
+                lastError = error;
+                completedSnapshots++;
+                notifyAll();
+            }
+        }
+    }
+
+    private boolean isDue() {
+        return requested
+                || mutationsSinceSnapshot >= mutationThreshold
+                || (mutationsSinceSnapshot > 0
+                    && System.currentTimeMillis() - firstMutationTime >= intervalMillis);
+    }
+
+    /**
+     * Seal the journal, merge the sealed segments into the previous snapshot and write
+     * the result as the new snapshot
+     */
+    private void takeSnapshot() throws IOException {
+        long sealedSegment = journal.rotate();
+
+        TreeMap<String, Book> bookChanges = new TreeMap<>();
+        TreeMap<String, Member> memberChanges = new TreeMap<>();
+        TreeMap<String, Checkout> checkoutChanges = new TreeMap<>();
+        int[] counter = {-1};
+        // Segments folded in by the previous run are already in the base snapshot. Those
+        // kept from before startup are read again, which is harmless as every mutation
+        // sets a value rather than changing it.
+        for (File segment : journal.segmentFiles(foldedSegment, sealedSegment)) {
+            Journal.readSegment(segment, mutation -> {
+                switch (mutation.getType()) {
+                    case PUT_BOOK -> bookChanges.put(mutation.getBook().getIsbn(), mutation.getBook());
+                    case REMOVE_BOOK -> bookChanges.put(mutation.getKey(), null);
+                    case PUT_MEMBER -> memberChanges.put(mutation.getMember().getMemberId(), mutation.getMember());
+                    case REMOVE_MEMBER -> memberChanges.put(mutation.getKey(), null);
+                    case PUT_CHECKOUT -> checkoutChanges.put(mutation.getCheckout().getCheckoutId(), mutation.getCheckout());
+                    case REMOVE_CHECKOUT -> checkoutChanges.put(mutation.getKey(), null);
+                    case SET_COUNTER -> counter[0] = mutation.getCounter();
+                }
+            }, false);
+        }
+
+        Iterator<Book> baseBooks = Collections.emptyIterator();
+        Iterator<Member> baseMembers = Collections.emptyIterator();
+        Iterator<Checkout> baseCheckouts = Collections.emptyIterator();
+        int checkoutCounter = 0;
+        if (snapshotFile.exists()) {
+            if (SnapshotFormat.supportsMapping(snapshotFile)) {
+                MappedSnapshot base = MappedSnapshot.open(snapshotFile);
+                base.verify();
+                baseBooks = base.books();
+                baseMembers = base.members();
+                baseCheckouts = base.checkouts();
+                checkoutCounter = base.getCheckoutCounter();
+            } else {
+                // Older format without sorted sections: read it whole and sort
+                LibrarySnapshot base = SnapshotFormat.read(snapshotFile);
+                baseBooks = sorted(base.getBooks(), Book::getIsbn);
+                baseMembers = sorted(base.getMembers(), Member::getMemberId);
+                baseCheckouts = sorted(base.getCheckouts(), Checkout::getCheckoutId);
+                checkoutCounter = base.getCheckoutCounter();
+            }
+        }
+        if (counter[0] >= 0) {
+            checkoutCounter = counter[0];
+        }
+
+        SnapshotFormat.writeSorted(snapshotFile,
+                new MergingIterator<>(baseBooks, bookChanges, Book::getIsbn),
+                new MergingIterator<>(baseMembers, memberChanges, Member::getMemberId),
+                new MergingIterator<>(baseCheckouts, checkoutChanges, Checkout::getCheckoutId),
+                checkoutCounter, sync, compression, compressionLevel);
+        if (foldedSegment > 0) {
+            journal.deleteSegments(foldedSegment);
+        }
+        foldedSegment = sealedSegment;
+    }
+
+    private static <T> Iterator<T> sorted(Collection<T> records, Function<T, String> key) {
+        List<T> list = new ArrayList<>(records);
+        list.sort(Comparator.comparing(key));
+        return list.iterator();
+    }
+
+    /**
+     * Merges records sorted by key with a sorted map of changes. A change replaces the
+     * record with the same key; a null change removes it.
+     */
+    private static class MergingIterator<T> implements Iterator<T> {
+        private final Iterator<T> base;
+        private final Iterator<Map.Entry<String, T>> changes;
+        private final Function<T, String> key;
+        private T nextBase;
+        private Map.Entry<String, T> nextChange;
+        private T next;
+
+        MergingIterator(Iterator<T> base, TreeMap<String, T> changes, Function<T, String> key) {
+            this.base = base;
+            this.changes = changes.entrySet().iterator();
+            this.key = key;
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public T next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            T result = next;
+            advance();
+            return result;
+        }
+
+        private void advance() {
+            while (true) {
+                if (nextBase == null && base.hasNext()) {
+                    nextBase = base.next();
+                }
+                if (nextChange == null && changes.hasNext()) {
+                    nextChange = changes.next();
+                }
+                if (nextBase == null && nextChange == null) {
+                    next = null;
+                    return;
+                }
+
+                int cmp;
+                if (nextBase == null) {
+                    cmp = 1;
+                } else if (nextChange == null) {
+                    cmp = -1;
+                } else {
+                    cmp = key.apply(nextBase).compareTo(nextChange.getKey());
+                }
+
+                if (cmp < 0) {
+                    next = nextBase;
+                    nextBase = null;
+                    return;
+                }
+                if (cmp == 0) {
+                    nextBase = null;  // Replaced or removed by the change
+                }
+                T changed = nextChange.getValue();
+                nextChange = null;
+                if (changed != null) {
+                    next = changed;
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.librarysystem.service;
+
+import com.librarysystem.data.LinkedList;
+import com.librarysystem.data.OpenHashMap;
+import com.librarysystem.data.StripedHashMap;
+import com.librarysystem.model.Checkout;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The checkouts that are out for each book, oldest first, so finding who has a title
+ * takes time in proportion to its copies rather than every checkout in memory. A book
+ * with nothing out has no entry. Each checkout's node is kept by ID, so returns and
+ * renewals take constant time.
+ */
+final class BookCheckouts {
+    private final StripedHashMap<String, LinkedList<Checkout>> byIsbn;  // ISBN -> Active checkouts
+    private final OpenHashMap<String, LinkedList.Node<Checkout>> nodes;  // Checkout ID -> Node in byIsbn
+
+    BookCheckouts() {
+        this.byIsbn = new StripedHashMap<>();
+        this.nodes = new OpenHashMap<>();
+    }
+
+    /**
+     * Add a checkout that is out, after the book's existing ones
+     */
+    void add(Checkout checkout) {
+        LinkedList<Checkout> checkouts =
+                byIsbn.computeIfAbsent(checkout.getIsbn(), isbn -> new LinkedList<>());
+        nodes.put(checkout.getCheckoutId(), checkouts.add(checkout));
+    }
+
+    /**
+     * Take a checkout that was just returned off its book's list
+     */
+    void returned(Checkout checkout) {
+        LinkedList.Node<Checkout> node = nodes.remove(checkout.getCheckoutId());
+        LinkedList<Checkout> checkouts = byIsbn.get(checkout.getIsbn());
+        if (node == null || checkouts == null) {
+            return;
+        }
+        checkouts.remove(node);
+        if (checkouts.isEmpty()) {
+            byIsbn.remove(checkout.getIsbn());
+        }
+    }
+
+    /**
+     * Replace an active checkout with its renewed copy, keeping its place
+     */
+    void renewed(Checkout checkout) {
+        LinkedList.Node<Checkout> node = nodes.get(checkout.getCheckoutId());
+        LinkedList<Checkout> checkouts = byIsbn.get(checkout.getIsbn());
+        if (node != null && checkouts != null) {
+            checkouts.set(node, checkout);
+        }
+    }
+
+    /**
+     * Number of copies of a book that are out
+     */
+    int count(String isbn) {
+        LinkedList<Checkout> checkouts = byIsbn.get(isbn);
+        return checkouts != null ? checkouts.size() : 0;
+    }
+
+    /**
+     * The checkouts of a book that are out, oldest first
+     */
+    List<Checkout> get(String isbn) {
+        LinkedList<Checkout> checkouts = byIsbn.get(isbn);
+        if (checkouts == null) {
+            return new ArrayList<>();
+        }
+        List<Checkout> result = new ArrayList<>(checkouts.size());
+        for (Checkout checkout : checkouts) {
+            result.add(checkout);
+        }
+        return result;
+    }
+}
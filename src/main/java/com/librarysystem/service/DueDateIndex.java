@@ -0,0 +1,152 @@
+package com.librarysystem.service;
+
+import com.librarysystem.data.LinkedList;
+import com.librarysystem.data.OpenHashMap;
+import com.librarysystem.data.SecondaryIndexes;
+import com.librarysystem.data.TimingWheel;
+import com.librarysystem.model.Checkout;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Schedules each outstanding checkout's due-date events and keeps the overdue ones in
+ * due-date order, so they can be listed and counted without scanning every checkout.
+ *
+ * Each checkout has one timer on a {@link TimingWheel} keyed by epoch day: first for
+ * {@value #DUE_SOON_DAYS} days before it is due, then for the day after it is due. When
+ * the index is advanced to a new day, the timers for that day fire: a due-soon timer
+ * tells the listeners and is rescheduled for the overdue day, and an overdue timer marks
+ * the checkout {@link Checkout.CheckoutStatus#OVERDUE OVERDUE}, through the checkout
+ * indexes so they follow the status change, and adds it to the overdue list. The list is
+ * kept in due-date order by inserting each checkout from the end; timers fire in day
+ * order, so that is almost always an append. A checkout that is returned or renewed has
+ * its timer cancelled or is unlinked from the list, in constant time either way.
+ *
+ * All methods are synchronized, because queries advance the index.
+ */
+class DueDateIndex {
+    static final int DUE_SOON_DAYS = 2;
+
+    private final TimingWheel<Checkout> wheel;
+    private final OpenHashMap<String, TimingWheel.Timer<Checkout>> timers;  // Checkout ID -> pending timer
+    private final LinkedList<Checkout> overdue;
+    private final OpenHashMap<String, LinkedList.Node<Checkout>> overdueNodes;  // Checkout ID -> node in overdue
+    private final SecondaryIndexes<String, Checkout> checkoutIndexes;
+    private final List<DueDateListener> listeners;
+
+    /**
+     * Create an index whose events up to and including {@code today} fire on the first
+     * {@link #advance}
+     *
+     * @param checkoutIndexes the indexes to keep up to date as checkouts become overdue
+     */
+    DueDateIndex(LocalDate today, SecondaryIndexes<String, Checkout> checkoutIndexes) {
+        this.checkoutIndexes = checkoutIndexes;
+        this.wheel = new TimingWheel<>(today.toEpochDay());
+        this.timers = new OpenHashMap<>();
+        this.overdue = new LinkedList<>();
+        this.overdueNodes = new OpenHashMap<>();
+        this.listeners = new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * Start tracking a checkout that is still out. A checkout whose due-soon or overdue
+     * day has already passed fires on the next {@link #advance}.
+     */
+    synchronized void add(Checkout checkout) {
+        if (checkout.getStatus() == Checkout.CheckoutStatus.OVERDUE) {
+            overdueNodes.put(checkout.getCheckoutId(), overdue.addSorted(checkout, Checkout::compareTo));
+        } else {
+            schedule(checkout, checkout.getDueDate().toEpochDay() - DUE_SOON_DAYS);
+        }
+    }
+
+    /**
+     * Stop tracking a checkout, such as one that was returned
+     */
+    synchronized void remove(Checkout checkout) {
+        if (!wheel.cancel(timers.remove(checkout.getCheckoutId()))) {
+            LinkedList.Node<Checkout> node = overdueNodes.remove(checkout.getCheckoutId());
+            if (node != null) {
+                overdue.remove(node);
+            }
+        }
+    }
+
+    /**
+     * Replace a tracked checkout with a copy that has a new due date, such as a renewal
+     */
+    synchronized void update(Checkout checkout) {
+        remove(checkout);
+        add(checkout);
+    }
+
+    /**
+     * Fire every event due on or before {@code today}. Only the first call on a new day
+     * has anything to do; a date earlier than the last one is ignored.
+     */
+    synchronized void advance(LocalDate today) {
+        wheel.advance(today.toEpochDay(), this::fire);
+    }
+
+    /**
+     * Checkouts that are overdue on the given date, earliest due date first
+     */
+    synchronized List<Checkout> overdue(LocalDate today) {
+        advance(today);
+        List<Checkout> result = new ArrayList<>(overdue.size());
+        for (Checkout checkout : overdue) {
+            result.add(checkout);
+        }
+        return result;
+    }
+
+    /**
+     * Number of checkouts that are overdue on the given date
+     */
+    synchronized int countOverdue(LocalDate today) {
+        advance(today);
+        return overdue.size();
+    }
+
+    /**
+     * The latest day the index has been advanced to, which checkout statuses reflect
+     */
+    synchronized LocalDate today() {
+        return LocalDate.ofEpochDay(wheel.currentTick());
+    }
+
+    /**
+     * Register a listener for due-soon and overdue events
+     */
+    void addListener(DueDateListener listener) {
+        listeners.add(listener);
+    }
+
+    private void schedule(Checkout checkout, long day) {
+        timers.put(checkout.getCheckoutId(), wheel.schedule(checkout, day));
+    }
+
+    /**
+     * Handle a checkout's timer: the wheel's current tick is the day being processed
+     */
+    private void fire(Checkout checkout) {
+        long overdueDay = checkout.getDueDate().toEpochDay() + 1;
+        if (wheel.currentTick() < overdueDay) {
+            schedule(checkout, overdueDay);
+            for (DueDateListener listener : listeners) {
+                listener.dueSoon(checkout);
+            }
+        } else {
+            timers.remove(checkout.getCheckoutId());
+            LocalDate day = LocalDate.ofEpochDay(wheel.currentTick());
+            checkoutIndexes.update(checkout.getCheckoutId(), checkout, c -> c.markOverdue(day));
+            overdueNodes.put(checkout.getCheckoutId(), overdue.addSorted(checkout, Checkout::compareTo));
+            for (DueDateListener listener : listeners) {
+                listener.overdue(checkout);
+            }
+        }
+    }
+}
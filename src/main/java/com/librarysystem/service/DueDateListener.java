@@ -0,0 +1,22 @@
+package com.librarysystem.service;
+
+import com.librarysystem.model.Checkout;
+
+/**
+ * Told when a checkout is about to fall due and when it becomes overdue. Events for a
+ * day are delivered the first time the service is used that day, on the thread using it.
+ */
+public interface DueDateListener {
+
+    /**
+     * A checkout is due within the next two days
+     */
+    default void dueSoon(Checkout checkout) {
+    }
+
+    /**
+     * A checkout has just become overdue and been marked as such
+     */
+    default void overdue(Checkout checkout) {
+    }
+}
@@ -1,36 +1,126 @@
 package com.librarysystem.service;
 
 
-import com.librarysystem.data.HashMap;
-import com.librarysystem.data.LinkedList;
+import com.librarysystem.data.HashIndex;
+import com.librarysystem.data.OpenHashMap;
+import com.librarysystem.data.SecondaryIndexes;
+import com.librarysystem.data.SortedIndex;
+import com.librarysystem.data.StripedHashMap;
 import com.librarysystem.model.Book;
 import com.librarysystem.model.Checkout;
 import com.librarysystem.model.Member;
-import java.io.*;
+import com.librarysystem.persistence.HistoryStore;
+import com.librarysystem.persistence.LibraryRepository;
+import com.librarysystem.persistence.LibrarySnapshot;
+import com.librarysystem.persistence.LoadReport;
+import com.librarysystem.persistence.MappedSnapshot;
+import com.librarysystem.persistence.Mutation;
+import com.librarysystem.persistence.PersistenceConfig;
+import java.io.IOException;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 /**
  * Main library system service managing books, members, and checkouts.
+ * Books and members are kept in {@link StripedHashMap}s, so they can be looked up by
+ * ISBN and member ID from several threads while another thread makes changes. Changes
+ * themselves must still be made by one thread at a time.
  */
 public class LibraryService {
-    private final HashMap<String, Book> books;  // ISBN -> Book
-    private final HashMap<String, Member> members;  // Member ID -> Member
-    private final HashMap<String, LinkedList<Checkout>> memberCheckouts;  // Member ID -> Checkouts
-    private final HashMap<String, Checkout> checkoutRecords;  // Checkout ID -> Checkout
+    private final StripedHashMap<String, Book> books;  // ISBN -> Book
+    private final StripedHashMap<String, Member> members;  // Member ID -> Member
+    private final StripedHashMap<String, MemberCheckouts> memberCheckouts;  // Member ID -> Checkouts
+    private final BookCheckouts bookCheckouts;  // ISBN -> Active checkouts
+    private final OpenHashMap<String, Checkout> checkoutRecords;  // Checkout ID -> Checkout
+    private final DueDateIndex dueDates;  // Due-date events and overdue checkouts
+    // Secondary indexes over the books, members and checkouts maps, kept up to date by
+    // every change to them so queries by attribute need no scan. Each map's indexes share
+    // one lock, so lookups that load records lazily and the thread making changes can
+    // both update them.
+    private final SecondaryIndexes<String, Book> bookIndexes;
+    private final HashIndex<String, Book, String> booksByAuthor;  // Lower-case author -> Books
+    private final HashIndex<String, Book, String> booksByGenre;  // Lower-case genre -> Books
+    private final SortedIndex<String, Book, Integer> booksByAvailable;  // Available copies -> Books
+    private final SecondaryIndexes<String, Member> memberIndexes;
+    private final HashIndex<String, Member, Member.MembershipStatus> membersByStatus;
+    private final SecondaryIndexes<String, Checkout> checkoutIndexes;
+    private final HashIndex<String, Checkout, Checkout.CheckoutStatus> checkoutsByStatus;
+    // Totals over the books and checkouts, kept up to date by every change to them so
+    // statistics need no scan. While lazy loading, the book totals start from the
+    // snapshot's header and so also cover the books not yet loaded.
+    private final LongAdder availableCopies;
+    private final LongAdder checkedOutCopies;
+    private final LongAdder activeCheckouts;
+    private final PersistenceConfig persistenceConfig;
+    private final LibraryRepository repository;
+    private final LoadReport loadReport;
+    private LocalDate nextArchiveDate;
+    // Lazy loading state. Lookups load from the snapshot on several threads, so it is only
+    // changed, and records are only loaded from it, while holding lazyLock.
+    private final Object lazyLock = new Object();
+    private volatile MappedSnapshot lazySnapshot;  // Books and members not yet loaded, null once fully loaded
+    private int lazyNewBooks;  // Books added that are not in lazySnapshot, or replace one removed from it
+    private int lazyNewMembers;  // Members added that are not in lazySnapshot, or replace one removed from it
+    private final Set<String> lazyRemovedBooks = new HashSet<>();  // Books in lazySnapshot since removed
+    private final Set<String> lazyRemovedMembers = new HashSet<>();  // Members in lazySnapshot since removed
     private int checkoutCounter;
     private static final int DEFAULT_CHECKOUT_DAYS = 14;
     private static final double OVERDUE_FEE_PER_DAY = 1.0;
-    private static final String DATA_FILE = "library_data.ser";
 
     public LibraryService() {
-        this.books = new HashMap<>();
-        this.members = new HashMap<>();
-        this.memberCheckouts = new HashMap<>();
-        this.checkoutRecords = new HashMap<>();
+        this(PersistenceConfig.fromSystemProperties());
+    }
+
+    /**
+     * Create a service that stores its data with the engine selected by the config's mode
+     */
+    public LibraryService(PersistenceConfig persistenceConfig) {
+        this(persistenceConfig, LibraryRepository.open(persistenceConfig));
+    }
+
+    /**
+     * Create a service that stores its data in the given repository. The service loads
+     * the repository's data and closes it when the service is closed.
+     */
+    public LibraryService(PersistenceConfig persistenceConfig, LibraryRepository repository) {
+        if (repository == null) {
+            throw new IllegalArgumentException("Repository cannot be null");
+        }
+        // Maps are resized a stripe at a time or incrementally, so the change that fills a
+        // big map does not stall while it is rehashed. Loading sizes them up front instead.
+        this.books = new StripedHashMap<>();
+        this.members = new StripedHashMap<>();
+        this.memberCheckouts = new StripedHashMap<>();
+        this.bookCheckouts = new BookCheckouts();
+        this.checkoutRecords = new OpenHashMap<>(0, true);
+        this.bookIndexes = new SecondaryIndexes<>();
+        this.booksByAuthor = bookIndexes.addHashIndex(book -> lowerCase(book.getAuthor()));
+        this.booksByGenre = bookIndexes.addHashIndex(book -> lowerCase(book.getGenre()));
+        this.booksByAvailable = bookIndexes.addSortedIndex(Book::getAvailableCopies);
+        this.memberIndexes = new SecondaryIndexes<>();
+        this.membersByStatus = memberIndexes.addHashIndex(Member::getStatus);
+        this.checkoutIndexes = new SecondaryIndexes<>();
+        this.checkoutsByStatus = checkoutIndexes.addHashIndex(Checkout::getStatus);
+        this.dueDates = new DueDateIndex(LocalDate.now(), checkoutIndexes);
+        this.availableCopies = new LongAdder();
+        this.checkedOutCopies = new LongAdder();
+        this.activeCheckouts = new LongAdder();
         this.checkoutCounter = 0;
+        this.persistenceConfig = persistenceConfig;
+        this.repository = repository;
+        this.loadReport = new LoadReport(persistenceConfig.getEffectiveLoadThreads());
+        this.nextArchiveDate = LocalDate.now();
         loadData();
     }
 
@@ -43,31 +133,61 @@ public class LibraryService {
         if (book == null) {
             throw new IllegalArgumentException("Book cannot be null");
         }
-        books.put(book.getIsbn(), book);
-        saveData();
+        storeBook(book);
+        record(Mutation.putBook(book));
+    }
+
+    /**
+     * Add a batch of books at once, e.g. from a catalog import. In JOURNAL mode the whole
+     * batch is written as a single journal entry. In SNAPSHOT mode nothing is written
+     * until {@link #saveData()} is called, so a large import is saved once instead of
+     * rewriting the data file for every book.
+     */
+    public void addBooks(Collection<Book> batch) {
+        Mutation[] mutations = new Mutation[batch.size()];
+        int i = 0;
+        for (Book book : batch) {
+            if (book == null) {
+                throw new IllegalArgumentException("Book cannot be null");
+            }
+            mutations[i++] = Mutation.putBook(book);
+        }
+
+        for (Book book : batch) {
+            storeBook(book);
+        }
+        try {
+            repository.recordBulk(mutations);
+        } catch (IOException e) {
+            System.err.println("Error saving data: " + e.getMessage());
+        }
     }
 
     /**
      * Remove a book from the library
      */
     public void removeBook(String isbn) {
-        books.remove(isbn);
+        if (deleteBook(isbn) != null) {
+            record(Mutation.removeBook(isbn));
+        }
     }
 
     /**
      * Get book by ISBN
      */
     public Book getBook(String isbn) {
-        return books.get(isbn);
+        return lookupBook(isbn);
     }
 
     /**
      * Search books by title (contains search)
      */
     public List<Book> searchByTitle(String titleKeyword) {
+        materializeAll();
         List<Book> results = new ArrayList<>();
-        for (Book book : books.values()) {
-            if (book.getTitle().toLowerCase().contains(titleKeyword.toLowerCase())) {
+        String keyword = titleKeyword.toLowerCase();
+        for (Book book : books.valuesView()) {
+            if (book.getTitle().toLowerCase().contains(keyword)) {
                 results.add(book);
             }
         }
@@ -76,37 +196,48 @@ public class LibraryService {
     }
 
     /**
-     * Search books by author
+     * Search books by author (contains search). Each distinct author is tested once,
+     * rather than every book.
      */
     public List<Book> searchByAuthor(String authorName) {
+        materializeAll();
         List<Book> results = new ArrayList<>();
-        for (Book book : books.values()) {
-            if (book.getAuthor().toLowerCase().contains(authorName.toLowerCase())) {
-                results.add(book);
+        String keyword = authorName.toLowerCase();
+        for (String author : booksByAuthor.attributes()) {
+            if (author != null && author.contains(keyword)) {
+                results.addAll(booksByAuthor.get(author));
             }
         }
         return results;
     }
 
+    /**
+     * Get books in a genre, ignoring case, sorted by title
+     */
+    public List<Book> getBooksByGenre(String genre) {
+        materializeAll();
+        List<Book> results = booksByGenre.get(lowerCase(genre));
+        Collections.sort(results);
+        return results;
+    }
+
     /**
      * Get all books in library
      */
     public List<Book> getAllBooks() {
-        List<Book> allBooks = new ArrayList<>(books.values());
+        materializeAll();
+        List<Book> allBooks = new ArrayList<>(books.valuesView());
         Collections.sort(allBooks);
         return allBooks;
     }
 
     /**
-     * Get available books
+     * Get available books, sorted like the full catalog
      */
     public List<Book> getAvailableBooks() {
-        List<Book> available = new ArrayList<>();
-        for (Book book : books.values()) {
-            if (book.getAvailableCopies() > 0) {
-                available.add(book);
-            }
-        }
+        materializeAll();
+        List<Book> available = booksByAvailable.range(1, null);
+        Collections.sort(available);
         return available;
     }
 
@@ -119,43 +250,56 @@ public class LibraryService {
         if (member == null) {
             throw new IllegalArgumentException("Member cannot be null");
         }
-        members.put(member.getMemberId(), member);
-        memberCheckouts.put(member.getMemberId(), new LinkedList<>());
-        saveData();
+        storeMember(member);
+        memberCheckouts.put(member.getMemberId(), new MemberCheckouts());
+        record(Mutation.putMember(member));
     }
 
     /**
      * Remove a member from the library
      */
     public void removeMember(String memberId) {
-        members.remove(memberId);
         memberCheckouts.remove(memberId);
+        if (deleteMember(memberId) != null) {
+            record(Mutation.removeMember(memberId));
+        }
     }
 
     /**
      * Get member by ID
      */
     public Member getMember(String memberId) {
-        return members.get(memberId);
+        return lookupMember(memberId);
     }
 
     /**
      * Get all members
      */
     public List<Member> getAllMembers() {
-        List<Member> allMembers = new ArrayList<>(members.values());
+        materializeAll();
+        List<Member> allMembers = new ArrayList<>(members.valuesView());
         Collections.sort(allMembers);
         return allMembers;
     }
 
+    /**
+     * Get members with the given status, sorted by name
+     */
+    public List<Member> getMembersByStatus(Member.MembershipStatus status) {
+        materializeAll();
+        List<Member> results = membersByStatus.get(status);
+        Collections.sort(results);
+        return results;
+    }
+
     /**
      * Update member status
      */
     public void updateMemberStatus(String memberId, Member.MembershipStatus status) {
-        Member member = members.get(memberId);
+        Member member = lookupMember(memberId);
         if (member != null) {
-            member.setStatus(status);
-            saveData();
+            memberIndexes.update(memberId, member, m -> m.setStatus(status));
+            record(Mutation.putMember(member));
         }
     }
 
@@ -163,15 +307,17 @@ public class LibraryService {
      * Update member information (email, phone)
      */
     public void updateMemberInfo(String memberId, String email, String phone) {
-        Member member = members.get(memberId);
+        Member member = lookupMember(memberId);
         if (member != null) {
-            if (email != null && !email.isEmpty()) {
-                member.setEmail(email);
-            }
-            if (phone != null && !phone.isEmpty()) {
-                member.setPhone(phone);
-            }
-            saveData();
+            memberIndexes.update(memberId, member, m -> {
+                if (email != null && !email.isEmpty()) {
+                    m.setEmail(email);
+                }
+                if (phone != null && !phone.isEmpty()) {
+                    m.setPhone(phone);
+                }
+            });
+            record(Mutation.putMember(member));
         }
     }
 
@@ -181,8 +327,9 @@ public class LibraryService {
      * Checkout a book for a member
      */
     public boolean checkoutBook(String memberId, String isbn) {
-        Member member = members.get(memberId);
-        Book book = books.get(isbn);
+        advanceDueDates();
+        Member member = lookupMember(memberId);
+        Book book = lookupBook(isbn);
 
         if (member == null) {
             throw new IllegalArgumentException("Member not found: " + memberId);
@@ -194,29 +341,27 @@ public class LibraryService {
             throw new IllegalStateException("Member is not active");
         }
 
-        LinkedList<Checkout> memberCheckoutList = memberCheckouts.get(memberId);
-        int activeCheckouts = 0;
-        for (Checkout checkout : memberCheckoutList) {
-            if (checkout.getStatus() == Checkout.CheckoutStatus.ACTIVE) {
-                activeCheckouts++;
-            }
-        }
-
-        if (activeCheckouts >= member.getMaxCheckouts()) {
+        MemberCheckouts memberCheckoutList = memberCheckouts.get(memberId);
+        if (memberCheckoutList.activeCount() >= member.getMaxCheckouts()) {
             throw new IllegalStateException("Member has reached maximum checkouts");
         }
 
-        if (!book.checkoutCopy()) {
+        if (book.getAvailableCopies() == 0) {
             throw new IllegalStateException("Book is not available");
         }
+        bookIndexes.update(isbn, book, Book::checkoutCopy);
+        availableCopies.decrement();
+        checkedOutCopies.increment();
 
         String checkoutId = generateCheckoutId();
         Checkout checkout = new Checkout(checkoutId, memberId, isbn, 
                                         LocalDate.now(), DEFAULT_CHECKOUT_DAYS);
         
         memberCheckoutList.add(checkout);
-        checkoutRecords.put(checkoutId, checkout);
-        saveData();
+        bookCheckouts.add(checkout);
+        putCheckoutRecord(checkout);
+        dueDates.add(checkout);
+        record(Mutation.putCheckout(checkout), Mutation.putBook(book), Mutation.setCounter(checkoutCounter));
 
         return true;
     }
@@ -225,115 +370,159 @@ public class LibraryService {
      * Return a book
      */
     public boolean returnBook(String checkoutId) {
+        advanceDueDates();
         Checkout checkout = checkoutRecords.get(checkoutId);
 
         if (checkout == null) {
             throw new IllegalArgumentException("Checkout not found: " + checkoutId);
         }
-        if (checkout.getStatus() != Checkout.CheckoutStatus.ACTIVE) {
+        if (!checkout.isCheckedOut()) {
             throw new IllegalStateException("Checkout is not active");
         }
 
-        Book book = books.get(checkout.getIsbn());
+        Book book = lookupBook(checkout.getIsbn());
         if (book == null) {
             throw new IllegalStateException("Book not found for checkout");
         }
 
-        checkout.returnBook(LocalDate.now());
-        book.returnCopy();
-        saveData();
+        checkoutIndexes.update(checkoutId, checkout, c -> c.returnBook(LocalDate.now()));
+        activeCheckouts.decrement();
+        if (book.getAvailableCopies() < book.getTotalCopies()) {
+            bookIndexes.update(book.getIsbn(), book, Book::returnCopy);
+            availableCopies.increment();
+            checkedOutCopies.decrement();
+        }
+        dueDates.remove(checkout);
+        bookCheckouts.returned(checkout);
+        MemberCheckouts memberCheckoutList = memberCheckouts.get(checkout.getMemberId());
+        if (memberCheckoutList != null) {
+            memberCheckoutList.returned(checkout);
+        }
+        record(Mutation.putCheckout(checkout), Mutation.putBook(book));
 
+        // Returns are what make history grow, so check for old ones here once a day
+        if (!LocalDate.now().isBefore(nextArchiveDate)) {
+            archiveHistory();
+        }
         return true;
     }
 
     /**
-     * Get checkouts for a member
+     * Get checkouts for a member that are still held in memory: active ones and those
+     * returned recently. See {@link #getMemberHistory(String)} for older ones.
      */
     public List<Checkout> getMemberCheckouts(String memberId) {
-        LinkedList<Checkout> checkouts = memberCheckouts.get(memberId);
-        if (checkouts == null) {
-            return new ArrayList<>();
-        }
-        
-        List<Checkout> result = new ArrayList<>();
-        for (Checkout checkout : checkouts) {
-            result.add(checkout);
-        }
-        return result;
+        advanceDueDates();
+        MemberCheckouts checkouts = memberCheckouts.get(memberId);
+        return checkouts != null ? checkouts.all() : new ArrayList<>();
     }
 
     /**
-     * Get active checkouts for a member
+     * Get active checkouts for a member, oldest first. Takes time in proportion to the
+     * books the member has out, not their whole history.
      */
     public List<Checkout> getActiveCheckouts(String memberId) {
-        List<Checkout> active = new ArrayList<>();
-        LinkedList<Checkout> checkouts = memberCheckouts.get(memberId);
-        
-        if (checkouts != null) {
-            for (Checkout checkout : checkouts) {
-                if (checkout.getStatus() == Checkout.CheckoutStatus.ACTIVE) {
-                    active.add(checkout);
-                }
-            }
-        }
-        return active;
+        advanceDueDates();
+        MemberCheckouts checkouts = memberCheckouts.get(memberId);
+        return checkouts != null ? checkouts.active() : new ArrayList<>();
     }
 
     /**
-     * Get all active checkouts (across all members)
+     * Get the checkouts of a book that are out, oldest first, to see who has its copies.
+     * Takes time in proportion to the book's copies, not all checkouts.
+     */
+    public List<Checkout> getBookCheckouts(String isbn) {
+        advanceDueDates();
+        return bookCheckouts.get(isbn);
+    }
+
+    /**
+     * Get the number of copies of a book that are checked out, without listing them
+     */
+    public int getBookCheckoutCount(String isbn) {
+        return bookCheckouts.count(isbn);
+    }
+
+    /**
+     * Get all active checkouts (across all members), overdue ones included
      */
     public List<Checkout> getAllActiveCheckouts() {
-        List<Checkout> active = new ArrayList<>();
-        for (Checkout checkout : checkoutRecords.values()) {
-            if (checkout.getStatus() == Checkout.CheckoutStatus.ACTIVE) {
-                active.add(checkout);
-            }
-        }
+        advanceDueDates();
+        List<Checkout> active = checkoutsByStatus.get(Checkout.CheckoutStatus.ACTIVE);
+        active.addAll(checkoutsByStatus.get(Checkout.CheckoutStatus.OVERDUE));
         return active;
     }
 
     /**
-     * Get overdue checkouts
+     * Get the checkouts held in memory that have the given status
+     */
+    public List<Checkout> getCheckoutsByStatus(Checkout.CheckoutStatus status) {
+        advanceDueDates();
+        return checkoutsByStatus.get(status);
+    }
+
+    /**
+     * Get overdue checkouts, earliest due date first. Read from the due-date index, so
+     * this takes time in proportion to the number of overdue checkouts, not all of them.
      */
     public List<Checkout> getOverdueCheckouts() {
-        List<Checkout> overdue = new ArrayList<>();
-        
-        for (Checkout checkout : checkoutRecords.values()) {
-            if (checkout.isOverdue()) {
-                checkout.markOverdue();
-                overdue.add(checkout);
-            }
+        return dueDates.overdue(LocalDate.now());
+    }
+
+    /**
+     * Get the number of overdue checkouts without listing them
+     */
+    public int getOverdueCount() {
+        return dueDates.countOverdue(LocalDate.now());
+    }
+
+    /**
+     * Register a listener to be told when checkouts are about to fall due and when they
+     * become overdue
+     */
+    public void addDueDateListener(DueDateListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener cannot be null");
         }
-        
-        // Sort by due date (earliest first)
-        overdue.sort(Checkout::compareTo);
-        return overdue;
+        dueDates.addListener(listener);
+    }
+
+    /**
+     * Fire the due-date events for today: checkouts due soon are announced and those
+     * past their due date are marked overdue. This is the service's daily tick; only the
+     * first call of each day has any work to do, so every method that reads or changes
+     * checkouts calls it first and statuses are always current.
+     */
+    private void advanceDueDates() {
+        dueDates.advance(LocalDate.now());
     }
 
     /**
      * Calculate overdue fee for a checkout
      */
     public double calculateOverdueFee(String checkoutId) {
+        advanceDueDates();
         Checkout checkout = checkoutRecords.get(checkoutId);
         if (checkout == null) {
             return 0.0;
         }
-        return checkout.getOverdueDays() * OVERDUE_FEE_PER_DAY;
+        return checkout.getOverdueDays(dueDates.today()) * OVERDUE_FEE_PER_DAY;
     }
 
     /**
      * Renew a checkout
      */
     public boolean renewCheckout(String checkoutId) {
+        advanceDueDates();
         Checkout checkout = checkoutRecords.get(checkoutId);
 
         if (checkout == null) {
             throw new IllegalArgumentException("Checkout not found: " + checkoutId);
         }
-        if (checkout.getStatus() != Checkout.CheckoutStatus.ACTIVE) {
+        if (!checkout.isCheckedOut()) {
             throw new IllegalStateException("Cannot renew inactive checkout");
         }
-        if (checkout.isOverdue()) {
+        if (checkout.isOverdue(dueDates.today())) {
             throw new IllegalStateException("Cannot renew overdue checkout");
         }
 
@@ -345,59 +534,228 @@ public class LibraryService {
             DEFAULT_CHECKOUT_DAYS
         );
         
-        checkoutRecords.put(checkoutId, checkout);
+        putCheckoutRecord(checkout);
+        dueDates.update(checkout);
+        bookCheckouts.renewed(checkout);
+        MemberCheckouts memberCheckoutList = memberCheckouts.get(checkout.getMemberId());
+        if (memberCheckoutList != null) {
+            memberCheckoutList.renewed(checkout);
+        }
+        record(Mutation.putCheckout(checkout));
         return true;
     }
 
+    // ==================== CHECKOUT HISTORY ====================
+
+    /**
+     * Move checkouts returned more than the configured number of days ago out of memory
+     * and into the history file. This runs automatically on the first return of each
+     * day. Nothing is archived if the storage engine keeps no history.
+     *
+     * @return number of checkouts archived
+     */
+    public int archiveHistory() {
+        nextArchiveDate = LocalDate.now().plusDays(1);
+        HistoryStore history = repository.getHistory();
+        if (history == null) {
+            return 0;
+        }
+        LocalDate cutoff = LocalDate.now().minusDays(persistenceConfig.getHistoryAgeDays());
+        List<Checkout> expired = new ArrayList<>();
+        for (Checkout checkout : checkoutsByStatus.get(Checkout.CheckoutStatus.RETURNED)) {
+            if (checkout.getReturnDate() != null && !checkout.getReturnDate().isAfter(cutoff)) {
+                expired.add(checkout);
+            }
+        }
+        if (expired.isEmpty()) {
+            return 0;
+        }
+        expired.sort((a, b) -> a.getCheckoutId().compareTo(b.getCheckoutId()));
+
+        // Write to the history file before removing anything, so a crash in between
+        // cannot lose a checkout
+        try {
+            history.append(expired);
+        } catch (IOException e) {
+            System.err.println("Error archiving checkout history: " + e.getMessage());
+            return 0;
+        }
+
+        Set<String> expiredIds = new HashSet<>();
+        Set<String> affectedMembers = new HashSet<>();
+        Mutation[] removals = new Mutation[expired.size()];
+        for (int i = 0; i < expired.size(); i++) {
+            Checkout checkout = expired.get(i);
+            removeCheckoutRecord(checkout.getCheckoutId());
+            expiredIds.add(checkout.getCheckoutId());
+            affectedMembers.add(checkout.getMemberId());
+            removals[i] = Mutation.removeCheckout(checkout.getCheckoutId());
+        }
+        for (String memberId : affectedMembers) {
+            MemberCheckouts checkouts = memberCheckouts.get(memberId);
+            if (checkouts != null) {
+                checkouts.removeAll(expiredIds);
+            }
+        }
+
+        record(removals);
+        return expired.size();
+    }
+
+    /**
+     * Every checkout a member has made, including archived ones, oldest first
+     */
+    public List<Checkout> getMemberHistory(String memberId) {
+        advanceDueDates();
+        HistoryStore history = repository.getHistory();
+        List<Checkout> result;
+        try {
+            result = history != null ? history.findByMember(memberId) : new ArrayList<>();
+        } catch (IOException e) {
+            System.err.println("Error reading checkout history: " + e.getMessage());
+            result = new ArrayList<>();
+        }
+        result.addAll(getMemberCheckouts(memberId));
+        result.sort((a, b) -> a.getCheckoutId().compareTo(b.getCheckoutId()));
+        return result;
+    }
+
+    /**
+     * Every checkout of a book, including archived ones, oldest first
+     */
+    public List<Checkout> getBookHistory(String isbn) {
+        advanceDueDates();
+        HistoryStore history = repository.getHistory();
+        List<Checkout> result;
+        try {
+            result = history != null ? history.findByIsbn(isbn) : new ArrayList<>();
+        } catch (IOException e) {
+            System.err.println("Error reading checkout history: " + e.getMessage());
+            result = new ArrayList<>();
+        }
+        for (Checkout checkout : checkoutRecords.valuesView()) {
+            if (checkout.getIsbn().equals(isbn)) {
+                result.add(checkout);
+            }
+        }
+        result.sort((a, b) -> a.getCheckoutId().compareTo(b.getCheckoutId()));
+        return result;
+    }
+
+    /**
+     * Perform an action on every checkout in the history file, oldest first. Each one is
+     * read from disk as it is reached.
+     */
+    public void forEachArchivedCheckout(Consumer<Checkout> action) {
+        HistoryStore history = repository.getHistory();
+        if (history == null) {
+            return;
+        }
+        try {
+            history.forEach(action);
+        } catch (IOException e) {
+            throw new IllegalStateException("Error reading checkout history: " + e.getMessage(), e);
+        }
+    }
+
     // ==================== STATISTICS ====================
 
     /**
      * Get total number of books in library
      */
     public int getTotalBooks() {
-        return books.size();
+        if (lazySnapshot == null) {
+            return books.size();
+        }
+        synchronized (lazyLock) {
+            return lazySnapshot == null ? books.size() : lazySnapshot.getBookCount() + lazyNewBooks - lazyRemovedBooks.size();
+        }
     }
 
     /**
      * Get total number of available copies
      */
     public int getTotalAvailableCopies() {
-        int total = 0;
-        for (Book book : books.values()) {
-            total += book.getAvailableCopies();
-        }
-        return total;
+        return (int) availableCopies.sum();
     }
 
     /**
      * Get total number of checked out copies
      */
     public int getTotalCheckedOutCopies() {
-        int total = 0;
-        for (Book book : books.values()) {
-            total += book.getCheckedOutCopies();
-        }
-        return total;
+        return (int) checkedOutCopies.sum();
     }
 
     /**
      * Get member statistics
      */
     public int getTotalMembers() {
-        return members.size();
+        if (lazySnapshot == null) {
+            return members.size();
+        }
+        synchronized (lazyLock) {
+            return lazySnapshot == null ? members.size() : lazySnapshot.getMemberCount() + lazyNewMembers - lazyRemovedMembers.size();
+        }
     }
 
     /**
      * Get active checkout count
      */
     public int getTotalActiveCheckouts() {
-        int count = 0;
-        for (Checkout checkout : checkoutRecords.values()) {
-            if (checkout.getStatus() == Checkout.CheckoutStatus.ACTIVE) {
-                count++;
+        return (int) activeCheckouts.sum();
+    }
+
+    // ==================== BULK ACCESS ====================
+
+    /**
+     * Perform an action on every book, in no particular order, without copying the
+     * catalog into a list first. Books still in a lazily loaded snapshot are decoded one
+     * at a time and not kept.
+     */
+    public void forEachBook(Consumer<Book> action) {
+        books.forEach((isbn, book) -> action.accept(book));
+        MappedSnapshot snapshot = lazySnapshot;
+        if (snapshot != null) {
+            try {
+                snapshot.forEachBook(book -> {
+                    if (books.get(book.getIsbn()) == null) {
+                        action.accept(book);
+                    }
+                });
+            } catch (IOException e) {
+                throw new IllegalStateException("Error reading snapshot: " + e.getMessage(), e);
             }
         }
-        return count;
+    }
+
+    /**
+     * Perform an action on every member, in no particular order, without copying them
+     * into a list first
+     */
+    public void forEachMember(Consumer<Member> action) {
+        members.forEach((memberId, member) -> action.accept(member));
+        MappedSnapshot snapshot = lazySnapshot;
+        if (snapshot != null) {
+            try {
+                snapshot.forEachMember(member -> {
+                    if (members.get(member.getMemberId()) == null) {
+                        action.accept(member);
+                    }
+                });
+            } catch (IOException e) {
+                throw new IllegalStateException("Error reading snapshot: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Perform an action on every checkout still held in memory, returned ones included,
+     * in no particular order. Archived checkouts are visited by
+     * {@link #forEachArchivedCheckout(Consumer)}.
+     */
+    public void forEachCheckout(Consumer<Checkout> action) {
+        advanceDueDates();
+        checkoutRecords.forEach((checkoutId, checkout) -> action.accept(checkout));
     }
 
     // ==================== HELPER METHODS ====================
@@ -409,6 +767,10 @@ public class LibraryService {
         return "CO" + String.format("%06d", ++checkoutCounter);
     }
 
+    private static String lowerCase(String text) {
+        return text != null ? text.toLowerCase() : null;
+    }
+
     /**
      * Print library statistics
      */
@@ -419,75 +781,554 @@ public class LibraryService {
         System.out.println("Checked Out Copies: " + getTotalCheckedOutCopies());
         System.out.println("Total Members: " + getTotalMembers());
         System.out.println("Active Checkouts: " + getTotalActiveCheckouts());
-        System.out.println("Overdue Checkouts: " + getOverdueCheckouts().size());
+        System.out.println("Overdue Checkouts: " + getOverdueCount());
         System.out.println("=======================================\n");
     }
 
     // ==================== PERSISTENCE ====================
 
     /**
-     * Save library data to file
+     * Persist a change through the storage engine. Returns once the change is as durable
+     * as the configured durability level promises.
+     */
+    private void record(Mutation... mutations) {
+        try {
+            repository.record(mutations);
+        } catch (IOException e) {
+            System.err.println("Error saving data: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Write out the complete library data now. In JOURNAL mode this asks the background
+     * snapshotter for an immediate snapshot and waits for it; in SNAPSHOT mode the data
+     * file is rewritten from the in-memory maps.
      */
     public void saveData() {
-        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(DATA_FILE))) {
-            LibraryData data = new LibraryData();
-            data.books = new ArrayList<>(books.values());
-            data.members = new ArrayList<>(members.values());
-            data.checkouts = new ArrayList<>(checkoutRecords.values());
-            data.checkoutCounter = this.checkoutCounter;
-            
-            out.writeObject(data);
+        try {
+            repository.checkpoint();
         } catch (IOException e) {
             System.err.println("Error saving data: " + e.getMessage());
         }
     }
 
     /**
-     * Load library data from file
+     * Close the storage engine, flushing anything it has not written yet
+     */
+    public void close() {
+        try {
+            repository.close();
+        } catch (IOException e) {
+            System.err.println("Error closing storage: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Time spent in each phase of loading the data when this service started
+     */
+    public LoadReport getLoadReport() {
+        return loadReport;
+    }
+
+    /**
+     * Load library data from the storage engine, then link each member to their checkouts.
+     *
+     * With more than one load thread, the snapshot sections are decoded in parallel and
+     * the books, members and checkouts maps are filled at the same time. The time spent
+     * in each phase is kept in {@link #getLoadReport()}.
      */
     private void loadData() {
-        File file = new File(DATA_FILE);
-        if (!file.exists()) {
-            return;  // No saved data, start fresh
+        int threads = persistenceConfig.getEffectiveLoadThreads();
+        ForkJoinPool pool = threads > 1 ? new ForkJoinPool(threads) : null;
+        try {
+            try {
+                repository.load(new LoadTarget(pool), pool, loadReport);
+            } catch (IOException e) {
+                System.err.println("Error loading data: " + e.getMessage());
+            }
+
+            long start = System.nanoTime();
+            linkMemberCheckouts(pool);
+            loadReport.phase("link checkouts", start);
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Gives the storage engine access to the in-memory maps
+     */
+    private class LoadTarget implements LibraryRepository.Target {
+        private final ForkJoinPool pool;
+
+        LoadTarget(ForkJoinPool pool) {
+            this.pool = pool;
+        }
+
+        @Override
+        public void restore(LibrarySnapshot snapshot) {
+            restoreSnapshot(snapshot, pool);
+        }
+
+        @Override
+        public void restoreLazy(MappedSnapshot snapshot) throws IOException {
+            openLazySnapshot(snapshot, pool);
+        }
+
+        @Override
+        public void apply(Mutation mutation) {
+            applyMutation(mutation);
+        }
+
+        @Override
+        public LibrarySnapshot capture() {
+            materializeAll();
+            return new LibrarySnapshot(
+                    books.values(), members.values(), checkoutRecords.values(), checkoutCounter);
         }
+    }
+
+    /**
+     * Fill the in-memory maps from a loaded snapshot. Each map is filled by its own task
+     * when a pool is given.
+     */
+    private void restoreSnapshot(LibrarySnapshot snapshot, ForkJoinPool pool) {
+        runAll(pool,
+                // Restore books
+                () -> {
+                    books.ensureCapacity(snapshot.getBooks().size());
+                    for (Book book : snapshot.getBooks()) {
+                        putBookRecord(book);
+                    }
+                },
+                // Restore members
+                () -> {
+                    members.ensureCapacity(snapshot.getMembers().size());
+                    memberCheckouts.ensureCapacity(snapshot.getMembers().size());
+                    for (Member member : snapshot.getMembers()) {
+                        putMemberRecord(member);
+                        memberCheckouts.put(member.getMemberId(), new MemberCheckouts());
+                    }
+                },
+                // Restore checkouts
+                () -> {
+                    checkoutRecords.ensureCapacity(snapshot.getCheckouts().size());
+                    for (Checkout checkout : snapshot.getCheckouts()) {
+                        putCheckoutRecord(checkout);
+                    }
+                });
 
-        try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(DATA_FILE))) {
-            LibraryData data = (LibraryData) in.readObject();
-            
-            // Restore books
-            for (Book book : data.books) {
-                books.put(book.getIsbn(), book);
+        this.checkoutCounter = snapshot.getCheckoutCounter();
+    }
+
+    /**
+     * Run independent load steps, in parallel on the pool if there is one. The steps must
+     * not touch the same map.
+     */
+    private static void runAll(ForkJoinPool pool, Runnable... steps) {
+        if (pool == null) {
+            for (Runnable step : steps) {
+                step.run();
             }
-            
-            // Restore members
-            for (Member member : data.members) {
-                members.put(member.getMemberId(), member);
-                memberCheckouts.put(member.getMemberId(), new LinkedList<>());
+            return;
+        }
+
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (Runnable step : steps) {
+            tasks.add(pool.submit(step));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+    }
+
+    /**
+     * Apply a journaled mutation to the in-memory maps during replay
+     */
+    private void applyMutation(Mutation mutation) {
+        switch (mutation.getType()) {
+            case PUT_BOOK -> storeBook(mutation.getBook());
+            case REMOVE_BOOK -> deleteBook(mutation.getKey());
+            case PUT_MEMBER -> {
+                Member member = mutation.getMember();
+                storeMember(member);
+                memberCheckouts.computeIfAbsent(member.getMemberId(), id -> new MemberCheckouts());
             }
-            
-            // Restore checkouts
-            for (Checkout checkout : data.checkouts) {
-                checkoutRecords.put(checkout.getCheckoutId(), checkout);
-                LinkedList<Checkout> memberList = memberCheckouts.get(checkout.getMemberId());
-                if (memberList != null) {
-                    memberList.add(checkout);
-                }
+            case REMOVE_MEMBER -> {
+                deleteMember(mutation.getKey());
+                memberCheckouts.remove(mutation.getKey());
             }
-            
-            this.checkoutCounter = data.checkoutCounter;
-        } catch (IOException | ClassNotFoundException e) {
-            System.err.println("Error loading data: " + e.getMessage());
+            case PUT_CHECKOUT -> putCheckoutRecord(mutation.getCheckout());
+            case REMOVE_CHECKOUT -> removeCheckoutRecord(mutation.getKey());
+            case SET_COUNTER -> checkoutCounter = mutation.getCounter();
         }
     }
 
     /**
-     * Inner class to hold serializable library data
+     * Rebuild each member's checkout list from the checkout records, oldest first, and
+     * the book and due-date indexes from the active ones
      */
-    private static class LibraryData implements Serializable {
-        private static final long serialVersionUID = 1L;
-        List<Book> books;
-        List<Member> members;
+    private void linkMemberCheckouts(ForkJoinPool pool) {
+        Checkout[] checkouts = checkoutRecords.valuesView().toArray(new Checkout[0]);
+        Comparator<Checkout> byId = (a, b) -> a.getCheckoutId().compareTo(b.getCheckoutId());
+        if (pool != null) {
+            // A parallel sort started from inside the pool runs on the pool's threads
+            pool.submit(() -> Arrays.parallelSort(checkouts, byId)).join();
+        } else {
+            Arrays.sort(checkouts, byId);
+        }
+        for (Checkout checkout : checkouts) {
+            MemberCheckouts memberList = memberCheckouts.get(checkout.getMemberId());
+            if (memberList == null && lazySnapshot != null && lazyContainsMember(checkout.getMemberId())) {
+                memberList = new MemberCheckouts();
+                memberCheckouts.put(checkout.getMemberId(), memberList);
+            }
+            if (memberList != null) {
+                memberList.add(checkout);
+            }
+            if (checkout.isCheckedOut()) {
+                bookCheckouts.add(checkout);
+                dueDates.add(checkout);
+            }
+        }
+    }
+
+    // ==================== RECORD TOTALS AND INDEXES ====================
+
+    /**
+     * Put a book in the map, counting and indexing it in place of the one it replaces
+     */
+    private void putBookRecord(Book book) {
+        Book old = books.put(book.getIsbn(), book);
+        if (old != null) {
+            countBook(old, -1);
+        }
+        countBook(book, 1);
+        bookIndexes.put(book.getIsbn(), old, book);
+    }
+
+    /**
+     * Remove a book from the map and stop counting and indexing it
+     */
+    private Book removeBookRecord(String isbn) {
+        Book old = books.remove(isbn);
+        if (old != null) {
+            countBook(old, -1);
+            bookIndexes.remove(isbn, old);
+        }
+        return old;
+    }
+
+    /**
+     * Index a book just loaded from the mapped snapshot. Its copies are already in the
+     * totals, which start from the snapshot's.
+     */
+    private void addLoadedBook(Book book) {
+        bookIndexes.put(book.getIsbn(), null, book);
+    }
+
+    private void countBook(Book book, int sign) {
+        availableCopies.add((long) sign * book.getAvailableCopies());
+        checkedOutCopies.add((long) sign * book.getCheckedOutCopies());
+    }
+
+    /**
+     * Put a member in the map and index it in place of the one it replaces
+     */
+    private void putMemberRecord(Member member) {
+        Member old = members.put(member.getMemberId(), member);
+        memberIndexes.put(member.getMemberId(), old, member);
+    }
+
+    /**
+     * Remove a member from the map and stop indexing it
+     */
+    private Member removeMemberRecord(String memberId) {
+        Member old = members.remove(memberId);
+        if (old != null) {
+            memberIndexes.remove(memberId, old);
+        }
+        return old;
+    }
+
+    /**
+     * Put a checkout in the map, counting and indexing it in place of the one it
+     * replaces
+     */
+    private void putCheckoutRecord(Checkout checkout) {
+        Checkout old = checkoutRecords.put(checkout.getCheckoutId(), checkout);
+        if (old != null && old.isCheckedOut()) {
+            activeCheckouts.decrement();
+        }
+        if (checkout.isCheckedOut()) {
+            activeCheckouts.increment();
+        }
+        checkoutIndexes.put(checkout.getCheckoutId(), old, checkout);
+    }
+
+    /**
+     * Remove a checkout from the map and stop counting and indexing it
+     */
+    private void removeCheckoutRecord(String checkoutId) {
+        Checkout old = checkoutRecords.remove(checkoutId);
+        if (old != null) {
+            if (old.isCheckedOut()) {
+                activeCheckouts.decrement();
+            }
+            checkoutIndexes.remove(checkoutId, old);
+        }
+    }
+
+    // ==================== LAZY LOADING ====================
+
+    /**
+     * Map the snapshot instead of reading it. Only checkouts are loaded up front;
+     * books and members are decoded the first time they are looked up. The copy totals
+     * come from the snapshot's header. The checkouts are all read before anything is
+     * changed, so if the snapshot turns out to be damaged the maps are left untouched
+     * for the previous snapshot to be loaded into.
+     */
+    private void openLazySnapshot(MappedSnapshot snapshot, ForkJoinPool pool) throws IOException {
+        long available = snapshot.getAvailableCopies();
+        long checkedOut = snapshot.getCheckedOutCopies();
         List<Checkout> checkouts;
-        int checkoutCounter;
+        if (pool != null) {
+            checkouts = Arrays.asList(snapshot.readCheckouts(pool));
+        } else {
+            checkouts = new ArrayList<>(snapshot.getCheckoutCount());
+            snapshot.forEachCheckout(checkouts::add);
+        }
+
+        availableCopies.add(available);
+        checkedOutCopies.add(checkedOut);
+        lazySnapshot = snapshot;
+        checkoutRecords.ensureCapacity(checkouts.size());
+        for (Checkout checkout : checkouts) {
+            putCheckoutRecord(checkout);
+        }
+        checkoutCounter = snapshot.getCheckoutCounter();
+    }
+
+    /**
+     * Find a book, loading it from the mapped snapshot on first access
+     */
+    private Book lookupBook(String isbn) {
+        Book book = books.get(isbn);
+        if (book == null && lazySnapshot != null) {
+            synchronized (lazyLock) {
+                // Check again: another thread may have loaded the book, or loaded
+                // everything and then removed it, while this one waited
+                book = books.get(isbn);
+                if (book == null && lazySnapshot != null && !lazyRemovedBooks.contains(isbn)) {
+                    try {
+                        book = lazySnapshot.findBook(isbn);
+                    } catch (IOException e) {
+                        throw new IllegalStateException("Error reading snapshot: " + e.getMessage(), e);
+                    }
+                    if (book != null) {
+                        books.put(isbn, book);
+                        addLoadedBook(book);
+                    }
+                }
+            }
+        }
+        return book;
+    }
+
+    /**
+     * Find a member, loading it from the mapped snapshot on first access
+     */
+    private Member lookupMember(String memberId) {
+        Member member = members.get(memberId);
+        if (member == null && lazySnapshot != null) {
+            synchronized (lazyLock) {
+                // Check again, as for books
+                member = members.get(memberId);
+                if (member == null && lazySnapshot != null && !lazyRemovedMembers.contains(memberId)) {
+                    try {
+                        member = lazySnapshot.findMember(memberId);
+                    } catch (IOException e) {
+                        throw new IllegalStateException("Error reading snapshot: " + e.getMessage(), e);
+                    }
+                    if (member != null) {
+                        putMemberRecord(member);
+                        memberCheckouts.computeIfAbsent(memberId, id -> new MemberCheckouts());
+                    }
+                }
+            }
+        }
+        return member;
+    }
+
+    /**
+     * Put a book in the map, keeping the lazy book count and the copy totals right. A
+     * book that replaces one not yet loaded from the snapshot takes that one's copies
+     * out of the totals; one that replaces a removed book counts as new.
+     */
+    private void storeBook(Book book) {
+        if (lazySnapshot == null) {
+            putBookRecord(book);
+            return;
+        }
+        synchronized (lazyLock) {
+            if (lazySnapshot != null && books.get(book.getIsbn()) == null) {
+                Book stored = lazyFindBook(book.getIsbn());
+                if (stored != null) {
+                    countBook(stored, -1);
+                } else {
+                    lazyNewBooks++;
+                }
+            }
+            putBookRecord(book);
+        }
+    }
+
+    /**
+     * Put a member in the map, keeping the lazy member count right
+     */
+    private void storeMember(Member member) {
+        if (lazySnapshot == null) {
+            putMemberRecord(member);
+            return;
+        }
+        synchronized (lazyLock) {
+            if (lazySnapshot != null && members.get(member.getMemberId()) == null
+                    && !lazyContainsMember(member.getMemberId())) {
+                lazyNewMembers++;
+            }
+            putMemberRecord(member);
+        }
+    }
+
+    /**
+     * Remove a book from the map, keeping the lazy book count and the copy totals right.
+     * A book not yet loaded from the snapshot is not loaded just to be removed: it is
+     * marked removed, so that lookups and loading skip it, and its copies come out of
+     * the totals.
+     */
+    private Book deleteBook(String isbn) {
+        if (lazySnapshot == null) {
+            return removeBookRecord(isbn);
+        }
+        synchronized (lazyLock) {
+            if (lazySnapshot == null) {
+                return removeBookRecord(isbn);
+            }
+            Book stored = lazyFindBook(isbn);
+            Book old = removeBookRecord(isbn);
+            if (stored != null) {
+                lazyRemovedBooks.add(isbn);
+                if (old == null) {
+                    countBook(stored, -1);
+                    old = stored;
+                }
+            } else if (old != null) {
+                lazyNewBooks--;
+            }
+            return old;
+        }
+    }
+
+    /**
+     * Remove a member from the map, keeping the lazy member count right. A member not yet
+     * loaded from the snapshot is marked removed rather than loaded, as for books.
+     */
+    private Member deleteMember(String memberId) {
+        if (lazySnapshot == null) {
+            return removeMemberRecord(memberId);
+        }
+        synchronized (lazyLock) {
+            if (lazySnapshot == null) {
+                return removeMemberRecord(memberId);
+            }
+            boolean stored = lazyContainsMember(memberId);
+            Member old = removeMemberRecord(memberId);
+            if (stored) {
+                if (old == null) {
+                    try {
+                        old = lazySnapshot.findMember(memberId);
+                    } catch (IOException e) {
+                        throw new IllegalStateException("Error reading snapshot: " + e.getMessage(), e);
+                    }
+                }
+                lazyRemovedMembers.add(memberId);
+            } else if (old != null) {
+                lazyNewMembers--;
+            }
+            return old;
+        }
+    }
+
+    /**
+     * Find a book in the mapped snapshot, unless it has been removed since
+     */
+    private Book lazyFindBook(String isbn) {
+        if (lazyRemovedBooks.contains(isbn)) {
+            return null;
+        }
+        try {
+            return lazySnapshot.findBook(isbn);
+        } catch (IOException e) {
+            throw new IllegalStateException("Error reading snapshot: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Check whether a member is in the mapped snapshot and has not been removed since
+     */
+    private boolean lazyContainsMember(String memberId) {
+        if (lazyRemovedMembers.contains(memberId)) {
+            return false;
+        }
+        try {
+            return lazySnapshot.containsMember(memberId);
+        } catch (IOException e) {
+            throw new IllegalStateException("Error reading snapshot: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Load every book and member still in the mapped snapshot and not removed since.
+     * Called before any operation that needs to scan records.
+     */
+    private void materializeAll() {
+        if (lazySnapshot == null) {
+            return;
+        }
+
+        synchronized (lazyLock) {
+            if (lazySnapshot == null) {
+                return;
+            }
+            try {
+                lazySnapshot.forEachBook(book -> {
+                    if (lazyRemovedBooks.contains(book.getIsbn())) {
+                        return;
+                    }
+                    if (books.putIfAbsent(book.getIsbn(), book) == null) {
+                        addLoadedBook(book);
+                    }
+                });
+                lazySnapshot.forEachMember(member -> {
+                    if (lazyRemovedMembers.contains(member.getMemberId())) {
+                        return;
+                    }
+                    if (members.putIfAbsent(member.getMemberId(), member) == null) {
+                        memberIndexes.put(member.getMemberId(), null, member);
+                    }
+                    memberCheckouts.computeIfAbsent(member.getMemberId(), id -> new MemberCheckouts());
+                });
+            } catch (IOException e) {
+                throw new IllegalStateException("Error reading snapshot: " + e.getMessage(), e);
+            }
+
+            lazySnapshot = null;
+            lazyNewBooks = 0;
+            lazyNewMembers = 0;
+            lazyRemovedBooks.clear();
+            lazyRemovedMembers.clear();
+        }
     }
 }
@@ -0,0 +1,101 @@
+package com.librarysystem.service;
+
+import com.librarysystem.data.LinkedList;
+import com.librarysystem.data.OpenHashMap;
+import com.librarysystem.model.Checkout;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * One member's checkouts that are held in memory, oldest first, plus a sublist of the
+ * ones still out. The sublist holds handles into the full list, so checking the
+ * member's limit and listing their active checkouts take time in proportion to the
+ * books they have out, however long they have been borrowing. The sublist's nodes are
+ * kept by checkout ID, so returns and renewals take constant time.
+ */
+final class MemberCheckouts {
+    private final LinkedList<Checkout> all;
+    private final LinkedList<LinkedList.Node<Checkout>> active;  // Nodes of all that are checked out
+    // Checkout ID -> Node in active
+    private final OpenHashMap<String, LinkedList.Node<LinkedList.Node<Checkout>>> activeNodes;
+
+    MemberCheckouts() {
+        this.all = new LinkedList<>();
+        this.active = new LinkedList<>();
+        this.activeNodes = new OpenHashMap<>();
+    }
+
+    /**
+     * Add a checkout, after the member's existing ones
+     */
+    void add(Checkout checkout) {
+        LinkedList.Node<Checkout> node = all.add(checkout);
+        if (checkout.isCheckedOut()) {
+            activeNodes.put(checkout.getCheckoutId(), active.add(node));
+        }
+    }
+
+    /**
+     * Take a checkout that was just returned off the active sublist
+     */
+    void returned(Checkout checkout) {
+        LinkedList.Node<LinkedList.Node<Checkout>> node = activeNodes.remove(checkout.getCheckoutId());
+        if (node != null) {
+            active.remove(node);
+        }
+    }
+
+    /**
+     * Replace an active checkout with its renewed copy, keeping its place
+     */
+    void renewed(Checkout checkout) {
+        LinkedList.Node<LinkedList.Node<Checkout>> node = activeNodes.get(checkout.getCheckoutId());
+        if (node != null) {
+            all.set(node.getElement(), checkout);
+        }
+    }
+
+    /**
+     * Drop archived checkouts. Only returned checkouts are archived, so the active
+     * sublist is not affected.
+     */
+    void removeAll(Set<String> checkoutIds) {
+        Iterator<Checkout> it = all.iterator();
+        while (it.hasNext()) {
+            if (checkoutIds.contains(it.next().getCheckoutId())) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Number of checkouts the member has out
+     */
+    int activeCount() {
+        return active.size();
+    }
+
+    /**
+     * The checkouts the member has out, oldest first
+     */
+    List<Checkout> active() {
+        List<Checkout> result = new ArrayList<>(active.size());
+        for (LinkedList.Node<Checkout> node : active) {
+            result.add(node.getElement());
+        }
+        return result;
+    }
+
+    /**
+     * Every checkout held in memory for the member, oldest first
+     */
+    List<Checkout> all() {
+        List<Checkout> result = new ArrayList<>(all.size());
+        for (Checkout checkout : all) {
+            result.add(checkout);
+        }
+        return result;
+    }
+}